@@ -0,0 +1,152 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Runs microbenchmarks of the hot paths of the rules engine, the evaluation, <br>
+ * the file and position parsers and the renderers over representative <br>
+ * positions: the opening, a mid-game with full hands and a position in check. <br>
+ * Each benchmark is warmed up, then run for several timed iterations, and <br>
+ * reports its throughput, its average latency and the bytes it allocates per <br>
+ * operation. Build and run from <br>
+ * the project directory with <br>
+ * javac -d bin src/*.java bench/*.java && java -cp bin Bench [filter] <br>
+ * where only the benchmarks whose name contains filter are run. */
+public class Bench {
+    /** An operation to benchmark. Returns a value depending on its work, so <br>
+     * that the work cannot be optimized away. */
+    interface Op {
+        long run() throws Exception;
+    }
+
+    /** Untimed warmup iterations and timed iterations of each benchmark. */
+    private final static int    WARMUP_ITERATIONS= 3;
+
+    private final static int    ITERATIONS= 5;
+
+    /** The length of a warmup and of a timed iteration, in milliseconds. */
+    private final static long   WARMUP_MILLIS= 200;
+
+    private final static long   ITERATION_MILLIS= 500;
+
+    /** Operations run between two looks at the clock. */
+    private final static int    BATCH= 64;
+
+    /** The benchmarked positions as test case files: the name of each, and its <br>
+     * initial pieces and captures. */
+    private final static String[][] POSITIONS= {
+            {"opening", "d a1\ns b1\nr c1\ng d1\nn e1\np a2\n"
+                    + "N a5\nG b5\nR c5\nS d5\nD e5\nP e4\n\n[]\n[]\n"},
+            {"midgame", "d c1\ns b2\nn e3\nD c5\nS d4\nG a4\n\n[P R N]\n[g p r]\n"},
+            {"check", "d c1\ns d2\ng e1\np b2\nD c5\nN a1\nG e3\nS d5\nR b4\nP c4\n\n"
+                    + "[N]\n[r]\n"}};
+
+    /** Consumes the result of every operation. */
+    private static long         sink;
+
+    /** Runs the benchmarks whose name contains args[0], or all of them. */
+    public static void main(String[] args) throws Exception {
+        String filter= args.length > 0 ? args[0] : "";
+        List<String> names= new ArrayList<>();
+        List<Op> ops= new ArrayList<>();
+        for (String[] pos : POSITIONS) {
+            File file= File.createTempFile("bench", ".txt");
+            file.deleteOnExit();
+            FileWriter fw= new FileWriter(file);
+            fw.write(pos[1] + "\nmove a1 a2\n");
+            fw.close();
+            final String path= file.getPath();
+            final Game g= new Game(Utils.parseTestCase(path));
+            final Board b= g.getBoard();
+            final int[] buf= new int[2048];
+            final List<Piece> pieces= new ArrayList<>();
+            final List<Integer> from= new ArrayList<>();
+            for (int sq= 0; sq < Board.NUM_SQUARES; sq++) {
+                if (b.isOccupied(sq)) {
+                    pieces.add(b.getPiece(sq));
+                    from.add(sq);
+                }
+            }
+            names.add("inCheck/" + pos[0]);
+            ops.add(() -> (g.inCheck(true) ? 1 : 0) + (g.inCheck(false) ? 2 : 0));
+            names.add("availableMoves/" + pos[0]);
+            ops.add(() -> g.countAvailableMoves(true) + g.countAvailableMoves(false));
+            names.add("legalMoves/" + pos[0]);
+            ops.add(() -> g.legalMoves(true, buf, 0, false) + g.legalMoves(false, buf, 0, false));
+            final Evaluation eval= new Evaluation(g);
+            names.add("evaluate/" + pos[0]);
+            ops.add(() -> eval.evaluate(true));
+            names.add("Evaluation.compute/" + pos[0]);
+            ops.add(() -> eval.compute());
+            names.add("canMove/" + pos[0]);
+            ops.add(() -> canMoveAll(b, pieces, from));
+            names.add("parseTestCase/" + pos[0]);
+            ops.add(() -> Utils.parseTestCase(path).getInitPieces().size());
+            names.add("toString/" + pos[0]);
+            ops.add(() -> b.toString().length());
+            final String position= Position.toString(g);
+            names.add("Position.parse/" + pos[0]);
+            ops.add(() -> Position.parse(position).getNumTurns());
+            names.add("Position.toString/" + pos[0]);
+            ops.add(() -> Position.toString(g).length());
+        }
+        System.out.println(String.format("%-28s %14s %12s %12s", "Benchmark", "ops/s", "ns/op",
+                "B/op"));
+        for (int i= 0; i < names.size(); i++) {
+            if (names.get(i).contains(filter))
+                measure(names.get(i), ops.get(i));
+        }
+        if (sink == 42)
+            System.out.println("");
+    }
+
+    /** Returns the number of moves of the pieces at the squares from as given <br>
+     * by canMove of each of pieces on board b, the piece behind included. */
+    private static long canMoveAll(Board b, List<Piece> pieces, List<Integer> from) {
+        long ret= 0;
+        for (int i= 0; i < pieces.size(); i++) {
+            int sq= from.get(i);
+            for (int to= 0; to < Board.NUM_SQUARES; to++) {
+                if (pieces.get(i).canMove(sq, to, b, false))
+                    ret++;
+            }
+        }
+        return ret;
+    }
+
+    /** Warms up op, then times it and prints the throughput, average latency <br>
+     * and allocation per operation measured for the benchmark called name. */
+    private static void measure(String name, Op op) throws Exception {
+        for (int i= 0; i < WARMUP_ITERATIONS; i++)
+            iterate(op, WARMUP_MILLIS);
+        com.sun.management.ThreadMXBean threads=
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id= Thread.currentThread().getId();
+        long count= 0;
+        long nanos= 0;
+        long bytes= 0;
+        for (int i= 0; i < ITERATIONS; i++) {
+            long allocated= threads.getThreadAllocatedBytes(id);
+            long start= System.nanoTime();
+            count+= iterate(op, ITERATION_MILLIS);
+            nanos+= System.nanoTime() - start;
+            bytes+= threads.getThreadAllocatedBytes(id) - allocated;
+        }
+        System.out.println(String.format("%-28s %14.0f %12.1f %12.1f", name,
+                count * 1e9 / nanos, (double) nanos / count, (double) bytes / count));
+    }
+
+    /** Runs op in batches for at least millis milliseconds and returns the <br>
+     * number of operations run. */
+    private static long iterate(Op op, long millis) throws Exception {
+        long end= System.nanoTime() + millis * 1000000;
+        long count= 0;
+        do {
+            for (int i= 0; i < BATCH; i++)
+                sink+= op.run();
+            count+= BATCH;
+        } while (System.nanoTime() < end);
+        return count;
+    }
+}
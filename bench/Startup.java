@@ -0,0 +1,71 @@
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Measures the startup of file mode as the test runner sees it: each way of <br>
+ * launching the game is run on a script as a new process several times, and <br>
+ * its time to the first byte of output and to exit are reported. The ways <br>
+ * compared are the classes compiled by plain javac into bin, the jar built by <br>
+ * build.sh, and the jar with the class-data-sharing archive and the options <br>
+ * build.sh suggests for it. Build and run from the project directory with <br>
+ * ./build.sh && javac -d bin src/*.java bench/*.java <br>
+ * && java -cp bin Startup [script] [runs] <br>
+ * the script being samples/check.in and the runs 20 by default. */
+public class Startup {
+    /** The runs of each launch that are not timed, to warm up the disk cache. */
+    private final static int WARMUP_RUNS= 3;
+
+    /** Runs each launch on args[0] args[1] times and prints its timings. */
+    public static void main(String[] args) throws Exception {
+        String script= args.length > 0 ? args[0] : "samples/check.in";
+        int runs= args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String java= Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> names= new ArrayList<>();
+        List<List<String>> commands= new ArrayList<>();
+        names.add("javac, -cp bin");
+        commands.add(Arrays.asList(java, "-cp", "bin", "Game", "-f", script));
+        if (new File("BoxShogi.jar").exists()) {
+            names.add("build.sh, -jar");
+            commands.add(Arrays.asList(java, "-jar", "BoxShogi.jar", "-f", script));
+        }
+        if (new File("BoxShogi.jsa").exists()) {
+            names.add("build.sh, archive");
+            commands.add(Arrays.asList(java, "-XX:SharedArchiveFile=BoxShogi.jsa",
+                    "-Xlog:cds*=off", "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-jar",
+                    "BoxShogi.jar", "-f", script));
+        }
+        System.out.println(String.format("%-20s %14s %14s %12s", "launch",
+                "first out ms", "min first ms", "exit ms"));
+        for (int i= 0; i < commands.size(); i++) {
+            for (int r= 0; r < WARMUP_RUNS; r++)
+                time(commands.get(i));
+            long first= 0;
+            long minFirst= Long.MAX_VALUE;
+            long exit= 0;
+            for (int r= 0; r < runs; r++) {
+                long[] t= time(commands.get(i));
+                first+= t[0];
+                minFirst= Math.min(minFirst, t[0]);
+                exit+= t[1];
+            }
+            System.out.println(String.format("%-20s %14.1f %14.1f %12.1f", names.get(i),
+                    first / 1e6 / runs, minFirst / 1e6, exit / 1e6 / runs));
+        }
+    }
+
+    /** Runs command and returns the nanoseconds until the first byte of its <br>
+     * output and until it exits. */
+    private static long[] time(List<String> command) throws Exception {
+        long start= System.nanoTime();
+        Process p= new ProcessBuilder(command).redirectErrorStream(true).start();
+        InputStream in= p.getInputStream();
+        long first= in.read() < 0 ? 0 : System.nanoTime() - start;
+        in.transferTo(OutputStream.nullOutputStream());
+        p.waitFor();
+        return new long[] {first, System.nanoTime() - start};
+    }
+}
@@ -0,0 +1,20 @@
+#!/bin/sh
+# Builds BoxShogi.jar and its class-data-sharing archive BoxShogi.jsa.
+# The archive is dumped at the end of a training run of batch mode over the
+# scripts in the given directory (samples by default), so it holds the
+# classes file mode loads, already parsed and verified. String concatenation
+# is compiled inline, since bootstrapping the invokedynamic call sites javac
+# emits by default costs more at startup than the rest of a short game.
+# .command runs the jar alone; to use the archive, which must be rebuilt with
+# the jar and by the same JDK as the java that runs it, launch it with:
+#   java -XX:SharedArchiveFile=BoxShogi.jsa -Xlog:cds*=off -XX:TieredStopAtLevel=1 \
+#       -XX:+UseSerialGC -jar BoxShogi.jar -f file
+set -e
+cd "$(dirname "$0")"
+samples=${1:-samples}
+rm -rf build
+mkdir build
+javac -XDstringConcat=inline -d build src/*.java
+jar --create --file BoxShogi.jar --main-class Game -C build .
+rm -f BoxShogi.jsa
+java -XX:ArchiveClassesAtExit=BoxShogi.jsa -jar BoxShogi.jar -b "$samples" > /dev/null
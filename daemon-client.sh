@@ -0,0 +1,33 @@
+#!/bin/bash
+# Plays the test case file $1 on a daemon started with
+#   java -jar BoxShogi.jar -d port
+# and prints its output exactly as java -jar BoxShogi.jar -f $1 would.
+# A file the daemon cannot play gets its error on standard error and exit
+# status 1, as does a daemon that closes the connection before the end.
+# The daemon listens on the loopback port BOXSHOGI_PORT, 7071 by default.
+path=$(realpath -- "${1:?usage: daemon-client.sh file}") || exit 1
+exec 3<>"/dev/tcp/127.0.0.1/${BOXSHOGI_PORT:-7071}" || exit 1
+printf '%s\n' "$path" >&3
+# the output has no final newline, so a newline is kept between lines only
+output=
+failed=
+sep=
+status=1
+while IFS= read -r line <&3; do
+    if [ "$line" = "==> end <==" ]; then
+        [ -n "$failed" ] || status=0
+        break
+    elif [ "$line" = "==> error <==" ]; then
+        failed=1
+    else
+        output+="$sep$line"
+        sep=$'\n'
+    fi
+done
+exec 3<&-
+if [ $status -eq 0 ]; then
+    printf '%s' "$output"
+else
+    printf '%s\n' "$output" >&2
+fi
+exit $status
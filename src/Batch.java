@@ -0,0 +1,152 @@
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** A utility class for batch mode, which runs many file mode test cases <br>
+ * concurrently inside one virtual machine. Every test case is played by its <br>
+ * own Game on a bounded pool of worker threads, and its output is exactly <br>
+ * what file mode prints for it, written to a result file per test case or <br>
+ * gathered into one report in the order the test cases were given. */
+public class Batch {
+    /** The extension of the result file written for each test case. */
+    private final static String OUT_EXTENSION= ".out";
+
+    /** Runs batch mode given args of the form <br>
+     * -b path... [-t threads] [-o outDir] <br>
+     * where each path is a test case file, a directory whose files are all <br>
+     * test cases, or a glob such as cases/*.txt matching test case files. <br>
+     * With an output directory, the output of each test case is written to <br>
+     * outDir/name.out, and no test case is run if two different files have <br>
+     * the same name; otherwise the outputs are printed one after another, <br>
+     * each under a header naming its file. A summary follows in both cases. <br>
+     * By default there is one thread per available processor. No path, an <br>
+     * unusable one or a count of threads that is not a number gets the usage <br>
+     * line. */
+    static void run(String[] args) throws Exception {
+        int threads= Runtime.getRuntime().availableProcessors();
+        File outDir= null;
+        boolean usage= false;
+        int paths= 0;
+        List<File> files= new ArrayList<>();
+        for (int i= 1; i < args.length && !usage; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,9}"))
+                threads= Integer.parseInt(args[++i]);
+            else if (args[i].equals("-t"))
+                usage= true;
+            else if (args[i].equals("-o") && i + 1 < args.length)
+                outDir= new File(args[++i]);
+            else {
+                List<File> named= expand(args[i]);
+                if (named == null)
+                    usage= true;
+                else
+                    files.addAll(named);
+                paths++;
+            }
+        }
+        if (usage || paths == 0) {
+            System.out.println("Usage: -b path... [-t threads] [-o outDir]");
+            return;
+        }
+        if (outDir != null) {
+            String clash= clash(files);
+            if (clash != null) {
+                System.out.println(clash);
+                return;
+            }
+            outDir.mkdirs();
+        }
+        long start= System.nanoTime();
+        ExecutorService pool= Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<String>> outputs= new ArrayList<>();
+        for (File f : files) {
+            final File out= outDir == null ? null : new File(outDir, f.getName() + OUT_EXTENSION);
+            outputs.add(pool.submit(() -> {
+                String output= new Game(Utils.readTestCase(f.getPath())).fileOutput();
+                if (out == null)
+                    return output;
+                // the output is not kept once written, so memory stays flat
+                Files.write(out.toPath(), output.getBytes());
+                return null;
+            }));
+        }
+        int errors= 0;
+        for (int i= 0; i < files.size(); i++) {
+            String output;
+            try {
+                output= outputs.get(i).get();
+            } catch (Exception e) {
+                errors++;
+                output= "error: " + e.getCause() + System.lineSeparator();
+                if (outDir != null)
+                    System.out.println(files.get(i).getPath() + ": " + output.trim());
+            }
+            if (outDir == null) {
+                System.out.println("==> " + files.get(i).getPath() + " <==");
+                System.out.print(output);
+                System.out.println("");
+            }
+        }
+        pool.shutdown();
+        long nanos= Math.max(1, System.nanoTime() - start);
+        System.out.println("");
+        System.out.println("Files: " + files.size());
+        System.out.println("Errors: " + errors);
+        System.out.println("Time: " + nanos / 1000000 + " ms");
+        System.out.println("Files/sec: " + files.size() * 1000000000L / nanos);
+    }
+
+    /** Returns a message naming two different files of files with the same <br>
+     * name, whose outputs would overwrite each other in the output directory, <br>
+     * or null if there are none. */
+    private static String clash(List<File> files) throws Exception {
+        Map<String, File> byName= new HashMap<>();
+        for (File f : files) {
+            File other= byName.putIfAbsent(f.getName(), f);
+            if (other != null && !other.getCanonicalFile().equals(f.getCanonicalFile()))
+                return "Test cases " + other.getPath() + " and " + f.getPath()
+                        + " would both be written to " + f.getName() + OUT_EXTENSION
+                        + ". Rename one or run them in separate batches.";
+        }
+        return null;
+    }
+
+    /** Returns the test case files named by path: the file itself, the files <br>
+     * of a directory, or the files matching a glob, sorted by name. Wildcards <br>
+     * are matched in the file name only. A directory that cannot be listed, <br>
+     * or a glob whose directory does not exist or has wildcards, is reported <br>
+     * as unusable and null is returned. */
+    static List<File> expand(String path) throws Exception {
+        File f= new File(path);
+        List<File> ret= new ArrayList<>();
+        if (f.exists() && !f.isDirectory() || !f.exists() && !path.matches(".*[*?\\[{].*")) {
+            ret.add(f);
+            return ret;
+        }
+        File dir= f.isDirectory() ? f : f.getAbsoluteFile().getParentFile();
+        File[] children= dir.listFiles();
+        if (children == null) {
+            System.out.println("Unusable path: " + path);
+            return null;
+        }
+        PathMatcher glob= f.isDirectory() ? null
+                : FileSystems.getDefault().getPathMatcher("glob:" + f.getName());
+        for (File child : children) {
+            if (child.isFile() && (glob == null || glob.matches(child.toPath().getFileName())))
+                ret.add(child);
+        }
+        File[] sorted= ret.toArray(new File[0]);
+        Arrays.sort(sorted);
+        return Arrays.asList(sorted);
+    }
+}
@@ -1,43 +1,525 @@
-/** An instance represents a BoxShogi board for a game to be played. */
-public class Board {
-    /** The board on which BoxShogi is played. */
-    private Piece[][] board;
+import java.util.Arrays;
 
+/** An instance represents a BoxShogi board for a game to be played. <br>
+ * Squares are indexed 0..24 as col * 5 + row (a1 is 0, a5 is 4, e5 is 24), <br>
+ * and the position is kept as one 25-bit occupancy mask per side and piece type. */
+public class Board {
     /** The length of the square board. */
-    final static int  BOARD_SIZE= 5;
+    final static int                 BOARD_SIZE= 5;
+
+    /** The number of squares on the board. */
+    final static int                 NUM_SQUARES= BOARD_SIZE * BOARD_SIZE;
+
+    /** Side indices of the lower and UPPER player. */
+    final static int                 LOWER= 0, UPPER= 1;
+
+    /** Piece type indices, in the alphabetical order of their letters. */
+    final static int                 DRIVE= 0, GOVERNANCE= 1, NOTES= 2, PREVIEW= 3, RELAY= 4,
+            SHIELD= 5;
+
+    /** The letters of the piece types, indexed by piece type. */
+    final static String              TYPES= "dgnprs";
+
+    /** The number of piece types. */
+    final static int                 NUM_TYPES= 6;
+
+    /** Mask of every square on the board. */
+    final static int                 ALL= (1 << NUM_SQUARES) - 1;
+
+    /** Mask of each column of the board. */
+    final static int[]               COLUMNS;
+
+    /** Mask of each row of the board. */
+    final static int[]               ROWS;
+
+    /** Non-sliding moves indexed by [side][type][promoted][square]. */
+    private final static int[][][][] STEPS;
+
+    /** Sliding rays indexed by [direction][square], excluding the square itself. */
+    private final static int[][]     RAYS;
+
+    /** Square offsets of the eight directions; the first four increase the index. */
+    private final static int[]       DIR_X= {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private final static int[]       DIR_Y= {1, 1, 0, -1, -1, -1, 0, 1};
+
+    /** The square behind each square for each side, or -1 off the board. */
+    private final static int[][]     BEHIND;
+
+    /** The names of the pieces as printed on the board (i.e. +R), indexed by <br>
+     * piece code. */
+    private final static String[]    NAMES;
+
+    /** The squares sharing a row, column or diagonal with each square. A change <br>
+     * on a square only changes the moves of the pieces next to it and of the <br>
+     * sliding pieces on these squares. */
+    private final static int[]       LINES;
+
+    static {
+        STEPS= new int[2][NUM_TYPES][2][NUM_SQUARES];
+        RAYS= new int[8][NUM_SQUARES];
+        BEHIND= new int[2][NUM_SQUARES];
+        LINES= new int[NUM_SQUARES];
+        NAMES= new String[32];
+        for (int type= 0; type < NUM_TYPES; type++) {
+            String lower= TYPES.substring(type, type + 1);
+            NAMES[code(type, true, false)]= lower;
+            NAMES[code(type, false, false)]= lower.toUpperCase();
+            NAMES[code(type, true, true)]= "+" + lower;
+            NAMES[code(type, false, true)]= "+" + lower.toUpperCase();
+        }
+        COLUMNS= new int[BOARD_SIZE];
+        ROWS= new int[BOARD_SIZE];
+        for (int sq= 0; sq < NUM_SQUARES; sq++) {
+            int x= sq / BOARD_SIZE;
+            int y= sq % BOARD_SIZE;
+            COLUMNS[x]|= 1 << sq;
+            ROWS[y]|= 1 << sq;
+            for (int d= 0; d < 8; d++) {
+                for (int i= 1; onBoard(x + i * DIR_X[d], y + i * DIR_Y[d]); i++) {
+                    RAYS[d][sq]|= 1 << square(x + i * DIR_X[d], y + i * DIR_Y[d]);
+                }
+                LINES[sq]|= RAYS[d][sq];
+            }
+            for (int side= LOWER; side <= UPPER; side++) {
+                int f= side == LOWER ? 1 : -1;
+                BEHIND[side][sq]= onBoard(x, y - f) ? square(x, y - f) : -1;
+                for (int dx= -1; dx <= 1; dx++) {
+                    for (int dy= -1; dy <= 1; dy++) {
+                        if (dx == 0 && dy == 0 || !onBoard(x + dx, y + dy))
+                            continue;
+                        int bit= 1 << square(x + dx, y + dy);
+                        STEPS[side][DRIVE][0][sq]|= bit;
+                        STEPS[side][GOVERNANCE][1][sq]|= bit;
+                        STEPS[side][NOTES][1][sq]|= bit;
+                        if (dy != -f || dx == 0)
+                            STEPS[side][SHIELD][0][sq]|= bit;
+                        if (dx == 0 && dy == f) {
+                            STEPS[side][PREVIEW][0][sq]|= bit;
+                            STEPS[side][PREVIEW][1][sq]|= bit;
+                        }
+                        if (dy == f || dx != 0 && dy == -f)
+                            STEPS[side][RELAY][0][sq]|= bit;
+                        if (dy == f)
+                            STEPS[side][RELAY][1][sq]|= bit;
+                    }
+                }
+                STEPS[side][DRIVE][1][sq]= STEPS[side][DRIVE][0][sq];
+                STEPS[side][SHIELD][1][sq]= STEPS[side][SHIELD][0][sq];
+            }
+        }
+    }
+
+    /** Occupancy masks indexed by [side][type]. */
+    private int[][]   pieces;
+
+    /** Occupancy masks of all pieces of each side. */
+    private int[]     sides;
+
+    /** Mask of the squares holding a promoted piece. */
+    private int       promoted;
+
+    /** The piece type on each square, or -1 if the square is empty. */
+    private int[]     types;
+
+    /** The Zobrist key of the pieces on the board. */
+    private long      hash;
+
+    /** The sum of the scores of the pieces on the board given by Evaluation. */
+    private int       score;
+
+    /** The moves of the piece on each square as given by attacks, valid <br>
+     * for the occupied squares that are not in stale. */
+    private int[]     moves;
+
+    /** Mask of the squares whose entry in moves must be recomputed. */
+    private int       stale;
+
+    /** The squares attacked by each side, valid if attacksValid of the side is true. */
+    private int[]     attacked;
+
+    private boolean[] attacksValid;
 
     /** Constructor: creates Board object with Pieces initialized in standard start <br>
      * positions if fileMode is false, otherwise in positions based on input file. */
     public Board(boolean fileMode) {
-        board= new Piece[BOARD_SIZE][BOARD_SIZE];
+        pieces= new int[2][NUM_TYPES];
+        sides= new int[2];
+        types= new int[NUM_SQUARES];
+        Arrays.fill(types, -1);
+        moves= new int[NUM_SQUARES];
+        attacked= new int[2];
+        attacksValid= new boolean[2];
         if (!fileMode)
             setInitBoard();
     }
 
+    /** Constructor: creates a copy of Board other. */
+    public Board(Board other) {
+        pieces= new int[][] {other.pieces[LOWER].clone(), other.pieces[UPPER].clone()};
+        sides= other.sides.clone();
+        promoted= other.promoted;
+        types= other.types.clone();
+        hash= other.hash;
+        score= other.score;
+        moves= other.moves.clone();
+        stale= other.stale;
+        attacked= other.attacked.clone();
+        attacksValid= other.attacksValid.clone();
+    }
+
     /** Helper that sets pieces in standard start position for interactive mode. */
     private void setInitBoard() {
-        board[0][0]= new DPiece(true, false);
-        board[1][0]= new SPiece(true, false);
-        board[2][0]= new RPiece(true, false, false);
-        board[3][0]= new GPiece(true, false, false);
-        board[4][0]= new NPiece(true, false, false);
-        board[0][1]= new PPiece(true, false, false);
-        board[0][4]= new NPiece(false, false, false);
-        board[1][4]= new GPiece(false, false, false);
-        board[2][4]= new RPiece(false, false, false);
-        board[3][4]= new SPiece(false, false);
-        board[4][4]= new DPiece(false, false);
-        board[4][3]= new PPiece(false, false, false);
+        setBoardPiece(0, 0, new DPiece(true, false));
+        setBoardPiece(1, 0, new SPiece(true, false));
+        setBoardPiece(2, 0, new RPiece(true, false, false));
+        setBoardPiece(3, 0, new GPiece(true, false, false));
+        setBoardPiece(4, 0, new NPiece(true, false, false));
+        setBoardPiece(0, 1, new PPiece(true, false, false));
+        setBoardPiece(0, 4, new NPiece(false, false, false));
+        setBoardPiece(1, 4, new GPiece(false, false, false));
+        setBoardPiece(2, 4, new RPiece(false, false, false));
+        setBoardPiece(3, 4, new SPiece(false, false));
+        setBoardPiece(4, 4, new DPiece(false, false));
+        setBoardPiece(4, 3, new PPiece(false, false, false));
+    }
+
+    /** Returns the square index of the coordinates x and y. */
+    static int square(int x, int y) {
+        return x * BOARD_SIZE + y;
+    }
+
+    /** Returns true if the coordinates x and y are on the board. */
+    private static boolean onBoard(int x, int y) {
+        return x >= 0 && x < BOARD_SIZE && y >= 0 && y < BOARD_SIZE;
+    }
+
+    /** Returns the side index of the player, lower if lower is true. */
+    static int side(boolean lower) {
+        return lower ? LOWER : UPPER;
+    }
+
+    /** Returns a new piece of the given type belonging to the player, <br>
+     * lower if lower is true, promoted if pro is true. */
+    static Piece createPiece(int type, boolean lower, boolean pro) {
+        switch (type) {
+            case DRIVE:
+                return new DPiece(lower, false);
+            case GOVERNANCE:
+                return new GPiece(lower, pro, false);
+            case NOTES:
+                return new NPiece(lower, pro, false);
+            case PREVIEW:
+                return new PPiece(lower, pro, false);
+            case RELAY:
+                return new RPiece(lower, pro, false);
+            default:
+                return new SPiece(lower, false);
+        }
+    }
+
+    /** Holds the pieces shared by all boards, created the first time one is <br>
+     * asked for rather than whenever a Board is used. */
+    private static class SharedPieces {
+        /** Shared pieces indexed by piece code, as given by code(int, boolean, boolean). */
+        private final static Piece[] PIECES= new Piece[32];
+
+        static {
+            for (int type= 0; type < NUM_TYPES; type++) {
+                for (int side= LOWER; side <= UPPER; side++) {
+                    PIECES[code(type, side == LOWER, false)]=
+                            createPiece(type, side == LOWER, false);
+                    PIECES[code(type, side == LOWER, true)]=
+                            createPiece(type, side == LOWER, true);
+                }
+            }
+        }
+    }
+
+    /** Returns the piece with the given code, shared by all boards. <br>
+     * The piece returned must not be changed. */
+    static Piece sharedPiece(int code) {
+        return SharedPieces.PIECES[code];
     }
 
     /** Returns the piece on the board at the given coordinates x and y. */
     public Piece getPiece(int x, int y) {
-        return board[x][y];
+        return getPiece(square(x, y));
+    }
+
+    /** Returns the piece on the board at square sq. */
+    Piece getPiece(int sq) {
+        if (types[sq] < 0)
+            return null;
+        return createPiece(types[sq], (sides[LOWER] & 1 << sq) != 0, (promoted & 1 << sq) != 0);
     }
 
     /** Sets a Piece p on the board according to the given coordinates x and y. */
     protected void setBoardPiece(int x, int y, Piece p) {
-        board[x][y]= p;
+        setBoardPiece(square(x, y), p);
+    }
+
+    /** Sets a Piece p on the board at square sq. */
+    protected void setBoardPiece(int sq, Piece p) {
+        setPieceCode(sq, p == null ? -1
+                : code(TYPES.indexOf(p.getPieceType()), p.getLower(), p.getPromoted()));
+    }
+
+    /** Returns the code of the piece on square sq, packing its type, side and <br>
+     * promotion as in code(int, boolean, boolean), or -1 if sq is empty. */
+    int pieceCode(int sq) {
+        int type= types[sq];
+        if (type < 0)
+            return -1;
+        return code(type, (sides[LOWER] & 1 << sq) != 0, (promoted & 1 << sq) != 0);
+    }
+
+    /** Returns the code of a piece of the given type belonging to the player, <br>
+     * lower if lower is true, promoted if pro is true. */
+    static int code(int type, boolean lower, boolean pro) {
+        return type | (lower ? 0 : 8) | (pro ? 16 : 0);
+    }
+
+    /** Puts the piece with the given code on square sq, emptying it if code is -1. */
+    void setPieceCode(int sq, int code) {
+        int bit= 1 << sq;
+        int sliders= pieces[LOWER][GOVERNANCE] | pieces[LOWER][NOTES]
+                | pieces[UPPER][GOVERNANCE] | pieces[UPPER][NOTES];
+        sliders|= sliders << 1 | sliders >>> 1;
+        stale|= bit | STEPS[LOWER][DRIVE][0][sq] | LINES[sq] & sliders;
+        attacksValid[LOWER]= false;
+        attacksValid[UPPER]= false;
+        if (types[sq] >= 0) {
+            hash^= Zobrist.PIECES[pieceCode(sq)][sq];
+            score-= Evaluation.SQUARES[pieceCode(sq)][sq];
+            int side= (sides[LOWER] & bit) != 0 ? LOWER : UPPER;
+            pieces[side][types[sq]]&= ~bit;
+            sides[side]&= ~bit;
+            promoted&= ~bit;
+            types[sq]= -1;
+        }
+        if (code < 0)
+            return;
+        hash^= Zobrist.PIECES[code][sq];
+        score+= Evaluation.SQUARES[code][sq];
+        int side= code >>> 3 & 1;
+        int type= code & 7;
+        pieces[side][type]|= bit;
+        sides[side]|= bit;
+        if ( (code & 16) != 0)
+            promoted|= bit;
+        types[sq]= type;
+    }
+
+    /** Moves the piece on square from to square to, replacing any piece there. */
+    void movePiece(int from, int to) {
+        int code= pieceCode(from);
+        setPieceCode(from, -1);
+        setPieceCode(to, code);
+    }
+
+    /** Returns the type of the piece on square sq, or -1 if sq is empty. */
+    int typeAt(int sq) {
+        return types[sq];
+    }
+
+    /** Returns true if the piece on square sq belongs to the lower player. */
+    boolean isLower(int sq) {
+        return (sides[LOWER] & 1 << sq) != 0;
+    }
+
+    /** Returns true if the piece on square sq is promoted. */
+    boolean isPromoted(int sq) {
+        return (promoted & 1 << sq) != 0;
+    }
+
+    /** Sets the promotion status of the piece on square sq to pro. */
+    void setPromoted(int sq, boolean pro) {
+        if (isPromoted(sq) != pro)
+            setPieceCode(sq, pieceCode(sq) ^ 16);
+    }
+
+    /** Returns the Zobrist key of the pieces on the board. */
+    long hash() {
+        return hash;
+    }
+
+    /** Returns the sum of the scores of the pieces on the board given by <br>
+     * Evaluation, positive for lower. */
+    int score() {
+        return score;
+    }
+
+    /** Returns the occupancy mask of the pieces of the given type <br>
+     * belonging to the player, lower if lower is true. */
+    int pieces(boolean lower, int type) {
+        return pieces[side(lower)][type];
+    }
+
+    /** Returns the occupancy mask of the pieces of the player, lower if lower is true. */
+    int occupied(boolean lower) {
+        return sides[side(lower)];
+    }
+
+    /** Returns the mask of the squares holding a promoted piece. */
+    int promoted() {
+        return promoted;
+    }
+
+    /** Returns the square of the drive of the player, lower if lower is true. <br>
+     * If there are several, the highest square is returned, and a1 if there is none. */
+    int driveSquare(boolean lower) {
+        int d= pieces[side(lower)][DRIVE];
+        return d == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(d);
+    }
+
+    /** Returns the mask of squares the piece on sq can move to, including the <br>
+     * moves it borrows from the piece behind it. Returns 0 if sq is empty. */
+    int attacks(int sq) {
+        int type= types[sq];
+        if (type < 0)
+            return 0;
+        if (Stats.ENABLED)
+            Stats.count(Stats.ATTACKS);
+        int side= (sides[LOWER] & 1 << sq) != 0 ? LOWER : UPPER;
+        int occ= sides[LOWER] | sides[UPPER];
+        int ret= reach(side, type, (promoted & 1 << sq) != 0, sq, occ);
+        int behind= BEHIND[side][sq];
+        if (behind >= 0 && types[behind] >= 0) {
+            if (Stats.ENABLED)
+                Stats.count(Stats.BORROWED);
+            int behindSide= (sides[LOWER] & 1 << behind) != 0 ? LOWER : UPPER;
+            ret|= reach(side, types[behind], (promoted & 1 << behind) != 0, sq, occ)
+                    & ~sides[behindSide];
+        }
+        return ret & ~sides[side];
+    }
+
+    /** Returns the mask of squares the piece on sq can move to on a board holding <br>
+     * the pieces with the given codes, -1 for an empty square, as attacks(sq) <br>
+     * does for a Board holding them. Returns 0 if sq is empty. */
+    static int attacks(int[] codes, int sq) {
+        int code= codes[sq];
+        if (code < 0)
+            return 0;
+        int lower= 0;
+        int upper= 0;
+        for (int i= 0; i < NUM_SQUARES; i++) {
+            if (codes[i] >= 0 && (codes[i] & 8) == 0)
+                lower|= 1 << i;
+            else if (codes[i] >= 0)
+                upper|= 1 << i;
+        }
+        int side= code >>> 3 & 1;
+        int ret= reach(side, code & 7, (code & 16) != 0, sq, lower | upper);
+        int behind= BEHIND[side][sq];
+        if (behind >= 0 && codes[behind] >= 0) {
+            ret|= reach(side, codes[behind] & 7, (codes[behind] & 16) != 0, sq, lower | upper)
+                    & ~ ( (codes[behind] & 8) == 0 ? lower : upper);
+        }
+        return ret & ~ (side == LOWER ? lower : upper);
+    }
+
+    /** Returns attacks(sq), kept between calls as isAttacked keeps it. */
+    int keptAttacks(int sq) {
+        if ( (stale & 1 << sq) != 0) {
+            moves[sq]= attacks(sq);
+            stale&= ~ (1 << sq);
+        }
+        return moves[sq];
+    }
+
+    /** Returns whether or not the piece on from can move to to on this board. */
+    boolean canMove(int from, int to) {
+        if (Stats.ENABLED)
+            Stats.count(Stats.CAN_MOVE);
+        return (keptAttacks(from) & 1 << to) != 0;
+    }
+
+    /** Returns true if any piece of the player, lower if byLower is true, can move <br>
+     * to sq. The moves of the pieces are kept between calls, and only those of the <br>
+     * pieces next to a changed square or sliding through it are recomputed. */
+    boolean isAttacked(int sq, boolean byLower) {
+        int side= side(byLower);
+        if (attacksValid[side])
+            return (attacked[side] & 1 << sq) != 0;
+        int ret= 0;
+        for (int rest= sides[side]; rest != 0; rest&= rest - 1) {
+            int from= Integer.numberOfTrailingZeros(rest);
+            if ( (stale & 1 << from) != 0) {
+                moves[from]= attacks(from);
+                stale&= ~ (1 << from);
+            }
+            if ( (moves[from] & 1 << sq) != 0)
+                return true;
+            ret|= moves[from];
+        }
+        attacked[side]= ret;
+        attacksValid[side]= true;
+        return false;
+    }
+
+    /** Returns the mask of squares that the pieces of the player, lower if <br>
+     * lower is true, can move to. */
+    int attacked(boolean lower) {
+        int side= side(lower);
+        if (!attacksValid[side]) {
+            int ret= 0;
+            for (int rest= sides[side]; rest != 0; rest&= rest - 1) {
+                int from= Integer.numberOfTrailingZeros(rest);
+                if ( (stale & 1 << from) != 0) {
+                    moves[from]= attacks(from);
+                    stale&= ~ (1 << from);
+                }
+                ret|= moves[from];
+            }
+            attacked[side]= ret;
+            attacksValid[side]= true;
+        }
+        return attacked[side];
+    }
+
+    /** Returns the number of moves of the pieces of the player, lower if lower <br>
+     * is true, counting a move for each piece and square it can move to. */
+    int mobility(boolean lower) {
+        int ret= 0;
+        for (int rest= sides[side(lower)]; rest != 0; rest&= rest - 1) {
+            int from= Integer.numberOfTrailingZeros(rest);
+            if ( (stale & 1 << from) != 0) {
+                moves[from]= attacks(from);
+                stale&= ~ (1 << from);
+            }
+            ret+= Integer.bitCount(moves[from]);
+        }
+        return ret;
+    }
+
+    /** Returns the mask of the squares next to square sq. */
+    static int neighbours(int sq) {
+        return STEPS[LOWER][DRIVE][0][sq];
+    }
+
+    /** Returns the squares reached from sq by a piece of the given type and promotion <br>
+     * moving in the direction of side, given the occupancy occ of both sides. */
+    private static int reach(int side, int type, boolean pro, int sq, int occ) {
+        int ret= STEPS[side][type][pro ? 1 : 0][sq];
+        if (type == GOVERNANCE)
+            ret|= slide(1, sq, occ) | slide(3, sq, occ) | slide(5, sq, occ) | slide(7, sq, occ);
+        else if (type == NOTES)
+            ret|= slide(0, sq, occ) | slide(2, sq, occ) | slide(4, sq, occ) | slide(6, sq, occ);
+        return ret;
+    }
+
+    /** Returns the squares reached from sq sliding in direction dir until <br>
+     * the first piece in occ, which is included. */
+    private static int slide(int dir, int sq, int occ) {
+        int ray= RAYS[dir][sq];
+        int blockers= ray & occ;
+        if (blockers == 0)
+            return ray;
+        int first= dir < 4 ? Integer.numberOfTrailingZeros(blockers)
+                : 31 - Integer.numberOfLeadingZeros(blockers);
+        return ray & ~RAYS[dir][first];
     }
 
     /** Returns a String representation of the board. */
@@ -45,7 +527,7 @@ public class Board {
         String[][] pieces= new String[BOARD_SIZE][BOARD_SIZE];
         for (int row= 0; row < BOARD_SIZE; row++) {
             for (int col= 0; col < BOARD_SIZE; col++) {
-                pieces[col][row]= isOccupied(col, row) ? board[col][row].toString() : "";
+                pieces[col][row]= isOccupied(col, row) ? NAMES[pieceCode(square(col, row))] : "";
             }
         }
         return stringifyBoard(pieces);
@@ -53,7 +535,12 @@ public class Board {
 
     /** Returns if the position on the board given by (col, row) is occupied. */
     protected boolean isOccupied(int col, int row) {
-        return board[col][row] != null;
+        return isOccupied(square(col, row));
+    }
+
+    /** Returns if square sq of the board is occupied. */
+    protected boolean isOccupied(int sq) {
+        return types[sq] >= 0;
     }
 
     /** Helper function that returns the String output of outside of the board. */
@@ -83,4 +570,4 @@ public class Board {
         throw new IllegalArgumentException(
                 "Board must be an array of strings like \"\", \"P\", or \"+P\"");
     }
-}
\ No newline at end of file
+}
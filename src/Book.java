@@ -0,0 +1,193 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** An instance is an opening book read from a binary file mapped into memory. <br>
+ * The file holds a 16-byte header (the magic number and the number of entries) <br>
+ * followed by 16-byte entries sorted by position key and then by move, each <br>
+ * holding the Zobrist key of a position as given by Game.positionKey, a move <br>
+ * played from it as packed by Move, and the number of times it was played. <br>
+ * A lookup is a binary search over the mapped pages: nothing is loaded onto <br>
+ * the heap, opening a book takes the same time whatever its size, and the <br>
+ * processes that open the same book share its pages. */
+public class Book {
+    /** The first eight bytes of a book file, "BOXBOOK1". */
+    private final static long MAGIC= 0x424f58424f4f4b31L;
+
+    /** The length of the header and of an entry, in bytes. */
+    private final static int  HEADER= 16;
+
+    private final static int  ENTRY= 16;
+
+    /** The number of plies of each script recorded by default. */
+    private final static int  DEFAULT_PLIES= 16;
+
+    /** The room for the legal moves of one position. */
+    private final static int  MAX_MOVES= 2048;
+
+    /** The mapped book file. */
+    private MappedByteBuffer  entries;
+
+    /** The number of entries of the book. */
+    private int               size;
+
+    /** Constructor: opens the book in the file at path. Throws an IOException <br>
+     * if the file cannot be read or is not a book. */
+    public Book(String path) throws IOException {
+        try (FileChannel channel= FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long length= channel.size();
+            if (length < HEADER || length > Integer.MAX_VALUE)
+                throw new IOException("Not a book: " + path);
+            entries= channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        long count= entries.getLong(8);
+        if (entries.getLong(0) != MAGIC || count != (entries.capacity() - HEADER) / ENTRY)
+            throw new IOException("Not a book: " + path);
+        size= (int) count;
+    }
+
+    /** Returns the number of entries of the book. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the key of entry i. */
+    private long key(int i) {
+        return entries.getLong(HEADER + i * ENTRY);
+    }
+
+    /** Writes the moves of the book from the position with the given key into <br>
+     * moves and the times each was played into weights, in the order of the <br>
+     * book, and returns how many there are. At most moves.length are written. */
+    public int moves(long key, int[] moves, int[] weights) {
+        int n= 0;
+        for (int i= first(key); i < size && n < moves.length && key(i) == key; i++) {
+            moves[n]= entries.getInt(HEADER + i * ENTRY + 8);
+            weights[n]= entries.getInt(HEADER + i * ENTRY + 12);
+            n++;
+        }
+        return n;
+    }
+
+    /** Returns the move of the book played most often from the position with <br>
+     * the given key, or Move.NONE if the position is not in the book. The <br>
+     * entries of the position are scanned in the mapped file, so a probe <br>
+     * allocates nothing. */
+    public int best(long key) {
+        int best= Move.NONE;
+        int weight= 0;
+        for (int i= first(key); i < size && key(i) == key; i++) {
+            int w= entries.getInt(HEADER + i * ENTRY + 12);
+            if (w > weight) {
+                best= entries.getInt(HEADER + i * ENTRY + 8);
+                weight= w;
+            }
+        }
+        return best;
+    }
+
+    /** Returns the index of the first entry whose key is not below key, found <br>
+     * by binary search, or size if there is none. */
+    private int first(long key) {
+        int lo= 0;
+        int hi= size;
+        while (lo < hi) {
+            int mid= lo + hi >>> 1;
+            if (key(mid) < key)
+                lo= mid + 1;
+            else
+                hi= mid;
+        }
+        return lo;
+    }
+
+    /** Builds a book from the test case files scripts and writes it to the file <br>
+     * at path. The first plies moves of each script are recorded, each from the <br>
+     * position it is played in, as long as they are legal; the rest of a script <br>
+     * after an illegal move is skipped. Returns the number of entries written. */
+    static int build(List<File> scripts, String path, int plies) throws Exception {
+        Map<Long, Map<Integer, Integer>> book= new TreeMap<>();
+        int[] legal= new int[MAX_MOVES];
+        for (File f : scripts) {
+            Utils.TestCase tc= Utils.readTestCase(f.getPath());
+            Game g= new Game(tc);
+            Utils.MoveReader reader= tc.getMoveReader();
+            for (int ply= 0; ply < plies && !g.isGameOver() && reader.hasNext(); ply++) {
+                int m= Move.parse(reader.next());
+                boolean turn= g.isLowerTurn();
+                int n= g.legalMoves(turn, legal, 0, false);
+                boolean isLegal= false;
+                for (int i= 0; i < n && !isLegal; i++)
+                    isLegal= legal[i] == m;
+                if (!isLegal)
+                    break;
+                book.computeIfAbsent(g.positionKey(turn), k -> new TreeMap<>()).merge(m, 1,
+                        Integer::sum);
+                g.playMove(m);
+            }
+            reader.close();
+        }
+        int count= 0;
+        for (Map<Integer, Integer> moves : book.values())
+            count+= moves.size();
+        try (DataOutputStream out= new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeLong(MAGIC);
+            out.writeLong(count);
+            for (Map.Entry<Long, Map<Integer, Integer>> position : book.entrySet()) {
+                for (Map.Entry<Integer, Integer> move : position.getValue().entrySet()) {
+                    out.writeLong(position.getKey());
+                    out.writeInt(move.getKey());
+                    out.writeInt(move.getValue());
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Runs book mode given args of the form -k bookFile [-plies n] path... <br>
+     * Builds a book from the test case files named by each path (a file, a <br>
+     * directory or a glob, as in batch mode), recording the first n plies of <br>
+     * each script, 16 by default, and writes it to bookFile. No book file or <br>
+     * no script, an unusable path or a count of plies that is not a number <br>
+     * gets the usage line. */
+    static void run(String[] args) throws Exception {
+        int plies= DEFAULT_PLIES;
+        boolean usage= false;
+        List<File> scripts= new ArrayList<>();
+        for (int i= 2; i < args.length && !usage; i++) {
+            if (args[i].equals("-plies") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,9}"))
+                plies= Integer.parseInt(args[++i]);
+            else if (args[i].equals("-plies"))
+                usage= true;
+            else {
+                List<File> named= Batch.expand(args[i]);
+                if (named == null)
+                    usage= true;
+                else
+                    scripts.addAll(named);
+            }
+        }
+        if (usage || scripts.isEmpty()) {
+            System.out.println("Usage: -k bookFile [-plies n] path...");
+            return;
+        }
+        String path= args[1];
+        long start= System.nanoTime();
+        int count= build(scripts, path, plies);
+        System.out.println("Scripts: " + scripts.size());
+        System.out.println("Entries: " + count);
+        System.out.println("Time: " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -9,19 +9,18 @@ class DPiece extends Piece {
         super("d", lower, false, captured);
     }
 
-    /** Returns whether or not this piece can move from initPos to finalPos on board. */
-    @Override protected boolean canMove(int[] initPos, int[] finalPos, Board board,
-            boolean behind) {
-        if (!Piece.checkBounds(initPos, finalPos) || hitOwnPiece(initPos, finalPos, board))
+    /** Returns whether or not this piece can move from square from to square to on board. */
+    @Override protected boolean canMove(int from, int to, Board board, boolean behind) {
+        if (from == to || hitOwnPiece(to, board))
             return false;
-        int deltaI= Math.abs(initPos[0] - finalPos[0]);
-        int deltaJ= Math.abs(initPos[1] - finalPos[1]);
+        int deltaI= Math.abs(col(from) - col(to));
+        int deltaJ= Math.abs(row(from) - row(to));
         boolean driveCheck= deltaI <= 1 && deltaJ <= 1;
         if (!behind) {
-            Piece behindPiece= pieceBehind(initPos, board);
+            Piece behindPiece= pieceBehind(from, board);
             if (behindPiece == null)
                 return driveCheck;
-            return behindPiece.canMove(initPos, finalPos, board, true) || driveCheck;
+            return behindPiece.canMove(from, to, board, true) || driveCheck;
         }
         return driveCheck;
     }
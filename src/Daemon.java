@@ -0,0 +1,92 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** A utility class for daemon mode, which keeps one virtual machine running <br>
+ * and plays test case files as file mode does when their paths are sent to <br>
+ * it, so that many short scripts are played by warmed up code instead of a <br>
+ * new process each. Paths are read one per line from standard input or from <br>
+ * the connections to a local socket, and the output of each file, exactly <br>
+ * what file mode prints for it, is written back followed by a line holding <br>
+ * DELIMITER; a file that cannot be played gets a line holding FAILED before <br>
+ * it. The thin client daemon-client.sh plays one file this way and <br>
+ * prints what java -jar BoxShogi.jar -f would. */
+public class Daemon {
+    /** The line written after the output of each file. No line printed by <br>
+     * file mode can equal it. */
+    final static String         DELIMITER= "==> end <==";
+
+    /** The line written before DELIMITER when a file cannot be played, so that <br>
+     * a client can fail as file mode does. No line printed by file mode can <br>
+     * equal it. */
+    final static String         FAILED= "==> error <==";
+
+    /** The TCP port listened on when no address is given. */
+    private final static int    DEFAULT_PORT= 7071;
+
+    /** Runs daemon mode given args of the form -d [- | port | socketPath]. <br>
+     * With -, or no address, paths are read from standard input and outputs <br>
+     * written to standard output until the input ends. Otherwise connections <br>
+     * are accepted on the given TCP port of the loopback address, or on the <br>
+     * Unix-domain socket at socketPath if it is not a number, until the process <br>
+     * is stopped; a socketPath holding anything but a socket is refused, as in <br>
+     * server mode. Each connection is served on its own thread of a pool of <br>
+     * one thread per available processor, and closed when its client stops <br>
+     * sending. */
+    static void run(String[] args) throws Exception {
+        String address= args.length > 1 ? args[1] : "-";
+        if (address.equals("-")) {
+            serve(new BufferedReader(new InputStreamReader(System.in)),
+                    new OutputStreamWriter(System.out));
+            return;
+        }
+        ServerSocketChannel server= Server.bind(address);
+        if (server == null)
+            return;
+        ExecutorService pool= Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        System.out.println("Listening on " + address);
+        while (true) {
+            SocketChannel channel= server.accept();
+            pool.submit(() -> {
+                try (channel) {
+                    Charset cs= Charset.defaultCharset();
+                    serve(new BufferedReader(Channels.newReader(channel, cs)),
+                            Channels.newWriter(channel, cs));
+                } catch (IOException e) {
+                    // the client is gone, and so is its connection
+                }
+            });
+        }
+    }
+
+    /** Plays the test case file of each path read from in, one per line, and <br>
+     * writes its output to out followed by a line holding DELIMITER, until in <br>
+     * ends. A blank line or a file that cannot be played gets an output of <br>
+     * the form error: reason, followed by a line holding FAILED, so that a <br>
+     * client waiting for an answer always gets one. */
+    static void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ( (line= in.readLine()) != null) {
+            String path= line.trim();
+            String output;
+            try {
+                if (path.isEmpty())
+                    throw new IllegalArgumentException("No path");
+                output= new Game(Utils.readTestCase(path)).fileOutput();
+            } catch (Exception e) {
+                output= "error: " + e + System.lineSeparator() + FAILED;
+            }
+            out.write(output + System.lineSeparator() + DELIMITER + System.lineSeparator());
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/** An instance is a computer player that searches the current position of <br>
+ * a Game for the best move of the player to move. It runs iterative-deepening <br>
+ * alpha-beta search with a fixed-size transposition table and move ordering, <br>
+ * and stops when a wall-clock budget per move runs out, playing the best move <br>
+ * of the deepest search it completed. Moves are generated with the legality <br>
+ * rules of Game, so the engine only plays moves that Game accepts. */
+public class Engine {
+    /** The score of mating on the next move; mate in n plies scores MATE - n. */
+    final static int          MATE= 30000;
+
+    /** A score beyond any real score. */
+    private final static int  INFINITY= 32000;
+
+    /** The deepest ply the search reaches, quiescence included. */
+    private final static int  MAX_PLY= 64;
+
+    /** The room for moves generated at one ply. */
+    private final static int  MAX_MOVES= 2048;
+
+    /** The default number of entries of the transposition table, a power of two. */
+    private final static int  TT_SIZE= 1 << 18;
+
+    /** Transposition table bounds: the score is exact, a lower or an upper bound. */
+    private final static byte EXACT= 0, LOWER_BOUND= 1, UPPER_BOUND= 2;
+
+    /** Nodes searched between two looks at the clock. */
+    private final static int  CLOCK_INTERVAL= 256;
+
+    /** The longest search, a year, in milliseconds. Longer ones are cut to it, <br>
+     * so that their deadline in nanoseconds does not overflow. */
+    final static long         MAX_MILLIS= 365L * 24 * 3600 * 1000;
+
+    /** The game whose position is searched. */
+    private Game       game;
+
+    /** The board of game. */
+    private Board      b;
+
+    /** Scores the positions of game at the leaves of the search. */
+    private Evaluation evaluation;
+
+    /** The moves generated at each ply, and the ordering score of each. */
+    private int[][]    moves;
+
+    private int[][]    orders;
+
+    /** Two quiet moves per ply that caused a beta cutoff, tried early. */
+    private int[][]    killers;
+
+    /** Transposition table: key, best move, score, depth and bound of each entry. */
+    private long[]     ttKeys;
+
+    private int[]      ttMoves;
+
+    private int[]      ttScores;
+
+    private byte[]     ttDepths;
+
+    private byte[]     ttBounds;
+
+    /** Nodes searched by the current search. */
+    private long       nodes;
+
+    /** The time the current search started, must stop and stopped, in nanoseconds. */
+    private long       startTime;
+
+    private long       deadline;
+
+    private long       endTime;
+
+    /** Signals that the budget ran out and the current iteration is void. */
+    private boolean    stopped;
+
+    /** The deepest iteration completed by the last search, and its score. */
+    private int        depth;
+
+    private int        score;
+
+    /** The opening book consulted before searching, or null if there is none. */
+    private Book       book;
+
+    /** Signals that the last move returned was taken from the book. */
+    private boolean    fromBook;
+
+    /** Constructor: creates an Engine playing in Game g, with an empty <br>
+     * transposition table. */
+    public Engine(Game g) {
+        this(g, TT_SIZE);
+    }
+
+    /** Constructor: creates an Engine playing in Game g, with an empty <br>
+     * transposition table of tableSize entries, a power of two. */
+    public Engine(Game g, int tableSize) {
+        game= g;
+        b= g.getBoard();
+        evaluation= new Evaluation(g);
+        moves= new int[MAX_PLY][MAX_MOVES];
+        orders= new int[MAX_PLY][MAX_MOVES];
+        killers= new int[MAX_PLY][2];
+        ttKeys= new long[tableSize];
+        ttMoves= new int[tableSize];
+        ttScores= new int[tableSize];
+        ttDepths= new byte[tableSize];
+        ttBounds= new byte[tableSize];
+    }
+
+    /** Searches the position of the game for at most millis milliseconds and <br>
+     * returns the best move found for the player to move, or Move.NONE if that <br>
+     * player has no legal move. */
+    public int search(long millis) {
+        return search(millis, MAX_PLY - 1);
+    }
+
+    /** Searches the position of the game for at most millis milliseconds and <br>
+     * at most maxDepth plies deep, not counting quiescence, and returns the <br>
+     * best move found for the player to move, or Move.NONE if that player has <br>
+     * no legal move. */
+    public int search(long millis, int maxDepth) {
+        startTime= System.nanoTime();
+        deadline= startTime + Math.min(millis, MAX_MILLIS) * 1000000;
+        stopped= false;
+        nodes= 0;
+        depth= 0;
+        score= 0;
+        fromBook= false;
+        boolean turn= game.isLowerTurn();
+        int n= game.legalMoves(turn, moves[0], 0, false);
+        if (n == 0) {
+            endTime= System.nanoTime();
+            return Move.NONE;
+        }
+        int bookMove= book == null ? Move.NONE : book.best(game.positionKey(turn));
+        for (int i= 0; i < n && bookMove != Move.NONE; i++) {
+            if (moves[0][i] == bookMove) {
+                fromBook= true;
+                endTime= System.nanoTime();
+                return bookMove;
+            }
+        }
+        int best= moves[0][0];
+        for (int d= 1; d <= maxDepth && d < MAX_PLY; d++) {
+            int s= searchRoot(d, n, turn, best);
+            if (stopped)
+                break;
+            best= moves[0][0];
+            depth= d;
+            score= s;
+            if (Math.abs(s) >= MATE - MAX_PLY || n == 1
+                    || (System.nanoTime() - startTime) * 2 > deadline - startTime)
+                break;
+        }
+        endTime= System.nanoTime();
+        return best;
+    }
+
+    /** Searches the n root moves to depth d, trying move best first, leaves the <br>
+     * best move found at moves[0][0] and returns its score. */
+    private int searchRoot(int d, int n, boolean turn, int best) {
+        int[] list= moves[0];
+        for (int i= 0; i < n; i++) {
+            if (list[i] == best) {
+                list[i]= list[0];
+                list[0]= best;
+            }
+        }
+        int alpha= -INFINITY;
+        for (int i= 0; i < n; i++) {
+            int m= list[i];
+            game.makeMove(m, turn);
+            int s= -negamax(d - 1, -INFINITY, -alpha, 1, !turn);
+            game.unmakeMove();
+            if (stopped)
+                return alpha;
+            if (s > alpha) {
+                alpha= s;
+                System.arraycopy(list, 0, list, 1, i);
+                list[0]= m;
+            }
+        }
+        return alpha;
+    }
+
+    /** Returns the score of the position for the player given by turn, lower <br>
+     * if turn is true, searched d plies deep within the window (alpha, beta), <br>
+     * ply plies below the root. */
+    private int negamax(int d, int alpha, int beta, int ply, boolean turn) {
+        if (++nodes % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline)
+            stopped= true;
+        if (stopped)
+            return 0;
+        boolean check= game.inCheck(turn);
+        if (game.getNumTurns() + ply == 400 && !check)
+            return 0;
+        if (d <= 0) {
+            if (!check)
+                return quiesce(alpha, beta, ply, turn);
+            d= 1;
+        }
+        if (ply >= MAX_PLY - 1)
+            return evaluation.evaluate(turn);
+        long key= game.positionKey(turn);
+        int slot= (int) (key ^ key >>> 32) & ttKeys.length - 1;
+        int ttMove= Move.NONE;
+        if (ttKeys[slot] == key && ttMoves[slot] != 0) {
+            ttMove= ttMoves[slot];
+            if (ttDepths[slot] >= d) {
+                int s= fromTable(ttScores[slot], ply);
+                if (ttBounds[slot] == EXACT || ttBounds[slot] == LOWER_BOUND && s >= beta
+                        || ttBounds[slot] == UPPER_BOUND && s <= alpha)
+                    return s;
+            }
+        }
+        int[] list= moves[ply];
+        int n= game.legalMoves(turn, list, 0, false);
+        if (n == 0)
+            return ply - MATE;
+        order(list, n, ply, ttMove);
+        int alphaStart= alpha;
+        int best= list[0];
+        for (int i= 0; i < n; i++) {
+            int m= next(list, orders[ply], i, n);
+            game.makeMove(m, turn);
+            int s= -negamax(d - 1, -beta, -alpha, ply + 1, !turn);
+            game.unmakeMove();
+            if (stopped)
+                return 0;
+            if (s > alpha) {
+                alpha= s;
+                best= m;
+                if (alpha >= beta) {
+                    if (!Move.isDrop(m) && !b.isOccupied(Move.to(m)) && killers[ply][0] != m) {
+                        killers[ply][1]= killers[ply][0];
+                        killers[ply][0]= m;
+                    }
+                    break;
+                }
+            }
+        }
+        ttKeys[slot]= key;
+        ttMoves[slot]= best;
+        ttScores[slot]= toTable(alpha, ply);
+        ttDepths[slot]= (byte) d;
+        ttBounds[slot]= alpha >= beta ? LOWER_BOUND : alpha > alphaStart ? EXACT : UPPER_BOUND;
+        return alpha;
+    }
+
+    /** Returns the score of the position for the player given by turn within <br>
+     * the window (alpha, beta), ply plies below the root, searching captures <br>
+     * only until the position is quiet. */
+    private int quiesce(int alpha, int beta, int ply, boolean turn) {
+        int standPat= evaluation.evaluate(turn);
+        if (standPat >= beta || ply >= MAX_PLY - 1)
+            return standPat;
+        if (standPat > alpha)
+            alpha= standPat;
+        int[] list= moves[ply];
+        int n= game.legalMoves(turn, list, 0, true);
+        order(list, n, ply, Move.NONE);
+        for (int i= 0; i < n; i++) {
+            int m= next(list, orders[ply], i, n);
+            game.makeMove(m, turn);
+            nodes++;
+            int s= game.inCheck(!turn) ? -negamax(0, -beta, -alpha, ply + 1, !turn)
+                    : -quiesce(-beta, -alpha, ply + 1, !turn);
+            game.unmakeMove();
+            if (stopped)
+                return 0;
+            if (s > alpha) {
+                alpha= s;
+                if (alpha >= beta)
+                    break;
+            }
+        }
+        return alpha;
+    }
+
+    /** Scores the n moves of list at ply for ordering: the transposition table <br>
+     * move ttMove first, then captures of the most valuable piece by the least <br>
+     * valuable one, promotions, killer moves, and the remaining moves. */
+    private void order(int[] list, int n, int ply, int ttMove) {
+        int[] scores= orders[ply];
+        for (int i= 0; i < n; i++) {
+            int m= list[i];
+            int to= Move.to(m);
+            if (m == ttMove)
+                scores[i]= 1 << 30;
+            else if (!Move.isDrop(m) && b.isOccupied(to))
+                scores[i]= (1 << 20) + value(to) * 16 - value(Move.from(m)) / 16;
+            else if (Move.isPromote(m))
+                scores[i]= 1 << 19;
+            else if (m == killers[ply][0] || m == killers[ply][1])
+                scores[i]= 1 << 18;
+            else
+                scores[i]= Move.isDrop(m) ? 0 : 1;
+        }
+    }
+
+    /** Swaps the best scored of the moves i to n of list into index i and <br>
+     * returns it. */
+    private static int next(int[] list, int[] scores, int i, int n) {
+        int best= i;
+        for (int j= i + 1; j < n; j++) {
+            if (scores[j] > scores[best])
+                best= j;
+        }
+        int m= list[best];
+        list[best]= list[i];
+        list[i]= m;
+        int s= scores[best];
+        scores[best]= scores[i];
+        scores[i]= s;
+        return m;
+    }
+
+    /** Returns the value of the piece on square sq. */
+    private int value(int sq) {
+        return b.isPromoted(sq) ? Evaluation.PROMOTED_VALUES[b.typeAt(sq)]
+                : Evaluation.VALUES[b.typeAt(sq)];
+    }
+
+    /** Returns score s of a node ply plies below the root as stored in the <br>
+     * transposition table, with mate scores relative to the node. */
+    private static int toTable(int s, int ply) {
+        return s >= MATE - MAX_PLY ? s + ply : s <= MAX_PLY - MATE ? s - ply : s;
+    }
+
+    /** Returns table score s as a score of a node ply plies below the root. */
+    private static int fromTable(int s, int ply) {
+        return s >= MATE - MAX_PLY ? s - ply : s <= MAX_PLY - MATE ? s + ply : s;
+    }
+
+    /** Sets the opening book whose moves are played, when it has one, <br>
+     * instead of searching, to Book b, or to none if b is null. */
+    public void setBook(Book b) {
+        book= b;
+    }
+
+    /** Returns the deepest iteration completed by the last search. */
+    public int getDepth() {
+        return depth;
+    }
+
+    /** Returns the score of the last search for the player to move. */
+    public int getScore() {
+        return score;
+    }
+
+    /** Returns the nodes searched by the last search. */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** Returns a one-line report of the depth reached, score, nodes searched <br>
+     * and search speed of the last search. */
+    public String report() {
+        if (fromBook)
+            return "book move";
+        long nanos= Math.max(1, endTime - startTime);
+        return "depth " + depth + ", score " + score + ", " + nodes + " nodes, "
+                + nodes * 1000000000L / nanos + " nodes/sec, " + nanos / 1000000 + " ms";
+    }
+}
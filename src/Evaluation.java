@@ -0,0 +1,119 @@
+/** An instance scores the positions of a Game, counting material on the board <br>
+ * and in hand, the squares the pieces stand on, the safety of the drives and <br>
+ * the mobility of the pieces. The material and square terms are kept up to <br>
+ * date by Board and Game as pieces are moved, dropped and captured, so they <br>
+ * cost nothing to read; the other terms are computed from the moves Board <br>
+ * keeps, and the scores of recent positions are kept in a small cache. <br>
+ * Scores are in centipawns, a preview on the board being worth 100. */
+public class Evaluation {
+    /** Values of the pieces by type as in Board, unpromoted and promoted. */
+    final static int[]          VALUES= {0, 700, 800, 100, 400, 500};
+
+    final static int[]          PROMOTED_VALUES= {0, 1000, 1200, 100, 350, 500};
+
+    /** The value and square bonus of each piece indexed by [piece code][square], <br>
+     * the code as given by Board.code, positive for lower and negative for UPPER. */
+    final static int[][]        SQUARES;
+
+    /** The value of one piece in hand indexed by [side][type], positive for <br>
+     * lower and negative for UPPER. A piece in hand is worth a tenth more than <br>
+     * on the board, since it can be dropped almost anywhere. */
+    final static int[][]        HANDS;
+
+    /** The penalty for each square next to a drive attacked by the opponent, <br>
+     * and for a drive in check. */
+    private final static int    RING_PENALTY= 15, CHECK_PENALTY= 40;
+
+    /** The bonus for each square a piece can move to. */
+    private final static int    MOBILITY= 4;
+
+    /** The default number of entries of the cache. */
+    private final static int    CACHE_SIZE= 1 << 14;
+
+    static {
+        SQUARES= new int[32][Board.NUM_SQUARES];
+        HANDS= new int[2][Board.NUM_TYPES];
+        for (int type= 0; type < Board.NUM_TYPES; type++) {
+            for (int side= Board.LOWER; side <= Board.UPPER; side++) {
+                int sign= side == Board.LOWER ? 1 : -1;
+                HANDS[side][type]= sign * VALUES[type] * 11 / 10;
+                for (int sq= 0; sq < Board.NUM_SQUARES; sq++) {
+                    int x= sq / Board.BOARD_SIZE;
+                    // rows counted from the player's own back row
+                    int y= side == Board.LOWER ? sq % Board.BOARD_SIZE
+                            : Board.BOARD_SIZE - 1 - sq % Board.BOARD_SIZE;
+                    int center= 20 - 10 * Math.max(Math.abs(x - 2), Math.abs(y - 2));
+                    int bonus= type == Board.DRIVE ? 20 - 20 * y
+                            : type == Board.PREVIEW ? 10 * y : center;
+                    SQUARES[Board.code(type, side == Board.LOWER, false)][sq]=
+                            sign * (VALUES[type] + bonus);
+                    SQUARES[Board.code(type, side == Board.LOWER, true)][sq]=
+                            sign * (PROMOTED_VALUES[type] + center);
+                }
+            }
+        }
+    }
+
+    /** The game whose positions are scored, and its board. */
+    private Game      game;
+
+    private Board     b;
+
+    /** The cache: the position key held by each entry, whether it holds one, <br>
+     * and the score of the position for lower. */
+    private long[]    keys;
+
+    private boolean[] used;
+
+    private int[]     scores;
+
+    /** Constructor: an Evaluation of the positions of Game g with a cache of <br>
+     * the default size. */
+    public Evaluation(Game g) {
+        this(g, CACHE_SIZE);
+    }
+
+    /** Constructor: an Evaluation of the positions of Game g with a cache of <br>
+     * cacheSize entries, a power of two. */
+    public Evaluation(Game g, int cacheSize) {
+        game= g;
+        b= g.getBoard();
+        keys= new long[cacheSize];
+        used= new boolean[cacheSize];
+        scores= new int[cacheSize];
+    }
+
+    /** Returns the score of the current position of the game for the player <br>
+     * given by turn, lower if turn is true, looking it up in the cache first. */
+    public int evaluate(boolean turn) {
+        long key= game.positionKey(true);
+        int slot= (int) (key ^ key >>> 32) & keys.length - 1;
+        if (!used[slot] || keys[slot] != key) {
+            keys[slot]= key;
+            used[slot]= true;
+            scores[slot]= compute();
+        }
+        return turn ? scores[slot] : -scores[slot];
+    }
+
+    /** Returns the score of the current position of the game for lower, <br>
+     * without looking in the cache. */
+    int compute() {
+        int ret= b.score() + game.handScore();
+        ret+= MOBILITY * (b.mobility(true) - b.mobility(false));
+        ret-= driveDanger(true);
+        ret+= driveDanger(false);
+        return ret;
+    }
+
+    /** Returns the penalty for the squares next to the drive of the player, <br>
+     * lower if lower is true, attacked by the opponent, and for a check. */
+    private int driveDanger(boolean lower) {
+        int drive= b.driveSquare(lower);
+        if (b.pieces(lower, Board.DRIVE) == 0)
+            return 0;
+        int attacked= b.attacked(!lower);
+        int ret= RING_PENALTY * Integer.bitCount(Board.neighbours(drive) & attacked);
+        return (attacked & 1 << drive) != 0 ? ret + CHECK_PENALTY : ret;
+    }
+}
@@ -9,52 +9,28 @@ class GPiece extends Piece {
         super("g", lower, promoted, captured);
     }
 
-    /** Returns whether or not this piece can move from initPos to finalPos on board. */
-    @Override protected boolean canMove(int[] initPos, int[] finalPos, Board board,
-            boolean behind) {
-        if (!Piece.checkBounds(initPos, finalPos) || hitOwnPiece(initPos, finalPos, board))
+    /** Returns whether or not this piece can move from square from to square to on board. */
+    @Override protected boolean canMove(int from, int to, Board board, boolean behind) {
+        if (from == to || hitOwnPiece(to, board))
             return false;
-        int deltaI= Math.abs(initPos[0] - finalPos[0]);
-        int deltaJ= Math.abs(initPos[1] - finalPos[1]);
+        int deltaI= Math.abs(col(from) - col(to));
+        int deltaJ= Math.abs(row(from) - row(to));
         if (getPromoted()) {
             if (deltaI <= 1 && deltaJ <= 1)
                 return true;
         }
-        boolean governanceCheck= true;
-        if (deltaI != deltaJ)
-            governanceCheck= false;
-        boolean right= initPos[0] < finalPos[0] ? true : false;
-        boolean up= initPos[1] < finalPos[1] ? true : false;
-        if (up) {
-            if (right) {
-                for (int i= 1; i < deltaI; i++) {
-                    if (board.getPiece(initPos[0] + i, initPos[1] + i) != null)
-                        governanceCheck= false;
-                }
-            } else {
-                for (int i= 1; i < deltaI; i++) {
-                    if (board.getPiece(initPos[0] - i, initPos[1] + i) != null)
-                        governanceCheck= false;
-                }
-            }
-        } else {
-            if (right) {
-                for (int i= 1; i < deltaI; i++) {
-                    if (board.getPiece(initPos[0] + i, initPos[1] - i) != null)
-                        governanceCheck= false;
-                }
-            } else {
-                for (int i= 1; i < deltaI; i++) {
-                    if (board.getPiece(initPos[0] - i, initPos[1] - i) != null)
-                        governanceCheck= false;
-                }
-            }
+        boolean governanceCheck= deltaI == deltaJ;
+        int stepI= col(from) < col(to) ? 1 : -1;
+        int stepJ= row(from) < row(to) ? 1 : -1;
+        for (int i= 1; governanceCheck && i < deltaI; i++) {
+            if (board.isOccupied(Board.square(col(from) + i * stepI, row(from) + i * stepJ)))
+                governanceCheck= false;
         }
         if (!behind) {
-            Piece behindPiece= pieceBehind(initPos, board);
+            Piece behindPiece= pieceBehind(from, board);
             if (behindPiece == null)
                 return governanceCheck;
-            return behindPiece.canMove(initPos, finalPos, board, true) || governanceCheck;
+            return behindPiece.canMove(from, to, board, true) || governanceCheck;
         }
         return governanceCheck;
     }
@@ -1,8 +1,8 @@
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
 /** An instance represents a game of BoxShogi being played with <br>
  * either the command being given in advance (file mode) or <br>
@@ -11,39 +11,101 @@ import java.util.List;
  * specifications. <br>
  * @author Barry He (bh375@cornell.edu) */
 public class Game {
-    /** The pieces captured by the UPPER player. */
-    private List<String> upperCaptures;
+    /** The names of the pieces in hand indexed by [side][type] as in Board. */
+    private final static String[][] HAND_NAMES= {{"d", "g", "n", "p", "r", "s"},
+            {"D", "G", "N", "P", "R", "S"}};
 
-    /** The pieces captured by the lower player. */
-    private List<String> lowerCaptures;
+    /** The maximum number of moves made and not yet taken back at once. */
+    private final static int        MAX_UNDO= 512;
+
+    /** The default time the engine takes per move in engine mode, in milliseconds. */
+    private final static long       DEFAULT_ENGINE_MILLIS= 1000;
+
+    /** The number of positions kept in the check and evasion cache of a thread. */
+    private final static int        CACHE_SIZE= 1 << 16;
+
+    /** The check and evasion cache of each thread, keyed by positionKey. It is <br>
+     * shared by all the games the thread plays, so positions recurring across <br>
+     * the scripts of a batch or daemon worker, the games of a tournament thread <br>
+     * or the sessions of the server are looked up instead of recomputed. The <br>
+     * key covers the board, both hands and the side to move, which is all that <br>
+     * the check status and the evasions depend on. */
+    private final static ThreadLocal<PositionCache> CACHES=
+            ThreadLocal.withInitial(() -> new PositionCache(CACHE_SIZE));
+
+    /** The number of pieces of each type in the hand of each player, <br>
+     * indexed by [side][type] as in Board. */
+    private int[][]          hands;
+
+    /** The types of the pieces in the hand of each player in the order they <br>
+     * were captured, indexed by [side], and the number of pieces in each hand. */
+    private int[][]          handOrder;
+
+    private int[]            handSize;
 
     /** Moves to be made in file mode. Null if interactive mode. */
-    private List<String> moves;
+    private Utils.MoveReader moves;
 
     /** The board that BoxShogi is played on. */
-    private Board        b;
+    private Board            b;
 
     /** Represents the turn of either lower player or UPPER player. */
-    private boolean      lowerTurn;
+    private boolean          lowerTurn;
 
     /** The number of turns the game has gone on for. */
-    private int          numTurns;
+    private int              numTurns;
 
     /** Signals whether or not the game has ended. */
-    private boolean      gameOver;
+    private boolean          gameOver;
+
+    /** Reusable buffer of packed moves written by availableMoves. */
+    private int[]            moveBuf;
+
+    /** The first free index of moveBuf. */
+    private int              moveTop;
+
+    /** The moves taken back by unmakeMove, indexed by undo record. */
+    private int[]            undoMoves;
+
+    /** The piece code captured by each board move, or -1 if none. */
+    private int[]            undoCaptured;
+
+    /** The promotion status each moved piece had before its move. */
+    private boolean[]        undoPromoted;
+
+    /** The index in the hand each drop took its piece from. */
+    private int[]            undoHands;
+
+    /** The number of undo records in use. */
+    private int              undoTop;
+
+    /** The sum of the Zobrist keys of the pieces in both hands. */
+    private long             handKey;
+
+    /** The sum of the scores of the pieces in both hands given by Evaluation. */
+    private int              handScore;
+
+    /** The log the moves played are appended to, or null if there is none. */
+    private GameLog.Writer   log;
 
     /** Constructor: Interactive mode board initialization with <br>
-     * upperCaptures, lowerCaptures, the position of the <br>
+     * empty hands, the position of the <br>
      * pieces on b, numTurns, and gameOver set to default values. <br>
      * The field moves is not used and is not instantiated. */
     public Game() {
-        upperCaptures= new ArrayList<>();
-        lowerCaptures= new ArrayList<>();
+        hands= new int[2][Board.NUM_TYPES];
+        handOrder= new int[2][Board.NUM_SQUARES];
+        handSize= new int[2];
         b= new Board(false);
         moves= null;
         lowerTurn= true;
         numTurns= 0;
         gameOver= false;
+        moveBuf= new int[256];
+        undoMoves= new int[MAX_UNDO];
+        undoCaptured= new int[MAX_UNDO];
+        undoPromoted= new boolean[MAX_UNDO];
+        undoHands= new int[MAX_UNDO];
     }
 
     /** Constructor: File mode board initialization which passes in <br>
@@ -52,27 +114,82 @@ public class Game {
      * numTurns and gameOver are set to default of 0 and false, <br>
      * respectively.  */
     public Game(Utils.TestCase tc) {
-        upperCaptures= new ArrayList<>();
+        int size= tc.getUpperCaptures().size() + tc.getLowerCaptures().size();
+        hands= new int[2][Board.NUM_TYPES];
+        handOrder= new int[2][size + Board.NUM_SQUARES];
+        handSize= new int[2];
         for (String p : tc.getUpperCaptures()) {
             if (p.equals(""))
                 continue;
-            upperCaptures.add(p);
+            addToHand(Board.UPPER, Board.TYPES.indexOf(p.toLowerCase()), handSize[Board.UPPER]);
         }
-        lowerCaptures= new ArrayList<>();
         for (String p : tc.getLowerCaptures()) {
             if (p.equals(""))
                 continue;
-            lowerCaptures.add(p);
+            addToHand(Board.LOWER, Board.TYPES.indexOf(p.toLowerCase()), handSize[Board.LOWER]);
         }
         b= new Board(true);
         for (Utils.InitialPosition ip : tc.getInitPieces()) {
             int[] position= convertXY(ip.getPosition());
-            b.setBoardPiece(position[0], position[1], convertStrToPiece(ip.getPiece(), false));
+            b.setPieceCode(Board.square(position[0], position[1]),
+                    convertStrToCode(ip.getPiece()));
         }
-        moves= tc.getMoves();
+        moves= tc.getMoveReader();
         lowerTurn= true;
         numTurns= 0;
         gameOver= false;
+        moveBuf= new int[256];
+        undoMoves= new int[MAX_UNDO];
+        undoCaptured= new int[MAX_UNDO];
+        undoPromoted= new boolean[MAX_UNDO];
+        undoHands= new int[MAX_UNDO];
+    }
+
+    /** Constructor: creates a game in the position of Board board, with the <br>
+     * pieces of the types in upperHand and lowerHand in the hands of the UPPER <br>
+     * and lower player in capture order, lower to move if lowerTurn is true and <br>
+     * numTurns turns played. The field moves is not used and is not instantiated. */
+    Game(Board board, int[] upperHand, int[] lowerHand, boolean lowerTurn, int numTurns) {
+        hands= new int[2][Board.NUM_TYPES];
+        handOrder= new int[2][upperHand.length + lowerHand.length + Board.NUM_SQUARES];
+        handSize= new int[2];
+        for (int type : upperHand) {
+            addToHand(Board.UPPER, type, handSize[Board.UPPER]);
+        }
+        for (int type : lowerHand) {
+            addToHand(Board.LOWER, type, handSize[Board.LOWER]);
+        }
+        b= board;
+        moves= null;
+        this.lowerTurn= lowerTurn;
+        this.numTurns= numTurns;
+        gameOver= false;
+        moveBuf= new int[256];
+        undoMoves= new int[MAX_UNDO];
+        undoCaptured= new int[MAX_UNDO];
+        undoPromoted= new boolean[MAX_UNDO];
+        undoHands= new int[MAX_UNDO];
+    }
+
+    /** Constructor: creates a copy of the position of Game g, with its own <br>
+     * board, hands and buffers. The field moves is not copied. */
+    public Game(Game g) {
+        hands= new int[][] {g.hands[Board.LOWER].clone(), g.hands[Board.UPPER].clone()};
+        handOrder= new int[][] {g.handOrder[Board.LOWER].clone(),
+                g.handOrder[Board.UPPER].clone()};
+        handSize= g.handSize.clone();
+        b= new Board(g.b);
+        moves= null;
+        lowerTurn= g.lowerTurn;
+        numTurns= g.numTurns;
+        gameOver= g.gameOver;
+        handKey= g.handKey;
+        handScore= g.handScore;
+        moveBuf= new int[256];
+        undoMoves= new int[MAX_UNDO];
+        undoCaptured= new int[MAX_UNDO];
+        undoPromoted= new boolean[MAX_UNDO];
+        undoHands= new int[MAX_UNDO];
     }
 
     /** Helper function that converts move into a 2d array of <br>
@@ -83,66 +200,16 @@ public class Game {
         return new int[] {move.charAt(0) - 97, move.charAt(1) - 49};
     }
 
-    /** Helper function that converts 2d array of coordinates pos <br>
-     * into a move and returns it (i.e. [0,4] into a5). */
-    private static String convertCoords(int[] pos) {
-        assert pos[0] >= 0 && pos[0] <= 4 && pos[1] >= 0 && pos[1] <= 4;
-        String ret= "";
-        switch (pos[0]) {
-            case 0:
-                ret+= "a";
-                break;
-            case 1:
-                ret+= "b";
-                break;
-            case 2:
-                ret+= "c";
-                break;
-            case 3:
-                ret+= "d";
-                break;
-            case 4:
-                ret+= "e";
-        }
-        return ret + Integer.toString(pos[1] + 1);
-    }
-
     /** Helper function that converts a string representation of piece <br>
-     * str with boolean cap into a Piece object and returns it. If cap <br>
-     * is true then the Piece is captured, else not captured.  */
-    private static Piece convertStrToPiece(String str, boolean cap) {
-        boolean promote= false;
-        String p= str;
-        if (str.length() == 2) {
-            promote= true;
-            p= Character.toString(str.charAt(1));
-        }
-        if (p.equals("D"))
-            return new DPiece(false, cap);
-        else if (p.equals("S"))
-            return new SPiece(false, cap);
-        else if (p.equals("G"))
-            return new GPiece(false, promote, cap);
-        else if (p.equals("P"))
-            return new PPiece(false, promote, cap);
-        else if (p.equals("R"))
-            return new RPiece(false, promote, cap);
-        else if (p.equals("N"))
-            return new NPiece(false, promote, cap);
-        else if (p.equals("d"))
-            return new DPiece(true, cap);
-        else if (p.equals("s"))
-            return new SPiece(true, cap);
-        else if (p.equals("g"))
-            return new GPiece(true, promote, cap);
-        else if (p.equals("p"))
-            return new PPiece(true, promote, cap);
-        else if (p.equals("r"))
-            return new RPiece(true, promote, cap);
-        else if (p.equals("n"))
-            return new NPiece(true, promote, cap);
-        else
-            return null;
+     * str (i.e. +R) into its code as given by Board.code and returns it, <br>
+     * or -1 if str is not a piece. */
+    private static int convertStrToCode(String str) {
+        char c= str.charAt(str.length() - 1);
+        int type= Board.TYPES.indexOf(Character.toLowerCase(c));
+        if (type < 0)
+            return -1;
+        boolean promote= str.length() == 2 && type != Board.DRIVE && type != Board.SHIELD;
+        return Board.code(type, Character.isLowerCase(c), promote);
     }
 
     /** Returns an output to be printed by the console after executing <br>
@@ -151,20 +218,38 @@ public class Game {
      * specifications, and if turn is true the player is lower, else <br>
      * the player is UPPER. */
     private String move(String m, boolean turn) {
+        return move(m, turn, true);
+    }
+
+    /** Returns the output of move(m, turn), except that if the move puts the <br>
+     * opponent in check without mating, null is returned when report is false <br>
+     * instead of listing the evasions, which checkReport can do later. */
+    private String move(String m, boolean turn, boolean report) {
+        return move(Move.parse(m), turn, report);
+    }
+
+    /** Returns the output of move(m, turn, report) for the move or drop mv in <br>
+     * packed form, Move.NONE standing for a command that is not one. */
+    private String move(int mv, boolean turn, boolean report) {
+        if (!Stats.ENABLED)
+            return playPacked(mv, turn, report);
+        long bytes= Stats.allocated();
+        long start= System.nanoTime();
+        String ret= playPacked(mv, turn, report);
+        Stats.record(Stats.MOVE, start);
+        Stats.recordMoveBytes(bytes);
+        return ret;
+    }
+
+    /** Plays mv as move(mv, turn, report) does, without recording it in Stats. */
+    private String playPacked(int mv, boolean turn, boolean report) {
         numTurns++;
         boolean doMove= false;
-        String[] oneMove= m.split(" ");
-        boolean dropMove= oneMove[0].equals("drop") ? true : false;
-        int[] init= !dropMove ? convertXY(oneMove[1]) : new int[0];
-        int[] moveTo= convertXY(oneMove[2]);
-        Piece curPiece= !dropMove ? b.getPiece(init[0], init[1]) : null;
-        if (oneMove.length == 4)
-            doMove= isLegalMove(init, moveTo, curPiece, true, turn);
-        else {
-            if (dropMove)
-                doMove= isLegalDrop(oneMove[1], moveTo, turn);
+        if (mv != Move.NONE) {
+            if (Move.isDrop(mv))
+                doMove= isLegalDrop(Move.dropType(mv), Move.to(mv), turn);
             else
-                doMove= isLegalMove(init, moveTo, curPiece, false, turn);
+                doMove= isLegalMove(Move.from(mv), Move.to(mv), Move.isPromote(mv), turn);
         }
         if (!doMove) {
             gameOver= true;
@@ -172,13 +257,7 @@ public class Game {
             return lowerTurn ? "lower player wins.  Illegal move."
                     : "UPPER player wins.  Illegal move.";
         } else {
-            if (dropMove) {
-                Piece newPiece= lowerTurn ? convertStrToPiece(oneMove[1], false)
-                        : convertStrToPiece(oneMove[1].toUpperCase(), false);
-                commitMove(moveTo, newPiece, turn);
-            } else {
-                commitMove(init, moveTo, curPiece, turn);
-            }
+            commitMove(mv, turn);
             if (gameOver) {
                 lowerTurn= !lowerTurn;
                 return lowerTurn ? "lower player wins.  Illegal move."
@@ -186,21 +265,27 @@ public class Game {
             }
         }
         lowerTurn= !lowerTurn;
+        if (log != null) {
+            try {
+                log.append(this, mv);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         String defaultRet= lowerTurn ? "lower> " : "UPPER> ";
-        if (inCheck(!turn)) {
-            List<String> nextMoves= availableMoves(!turn);
-            if (nextMoves.size() == 0) {
+        PositionCache cache= CACHES.get();
+        int slot= cache.find(positionKey(!turn));
+        if (slot < 0) {
+            boolean check= inCheck(!turn);
+            slot= cache.store(positionKey(!turn), check, check && hasEvasion(!turn));
+        }
+        if (cache.inCheck(slot)) {
+            if (!cache.escapable(slot)) {
                 gameOver= true;
                 return lowerTurn ? "UPPER player wins.  Checkmate."
                         : "lower player wins.  Checkmate.";
             }
-            String ret= lowerTurn ? "lower player is in check!" : "UPPER player is in check!";
-            ret+= "\n" + "Available moves:";
-            for (String moves : nextMoves) {
-                ret+= "\n" + moves;
-            }
-            ret+= "\n" + defaultRet;
-            return ret;
+            return report ? checkReport() : null;
         }
         if (numTurns == 400) {
             gameOver= true;
@@ -209,299 +294,414 @@ public class Game {
         return defaultRet;
     }
 
+    /** Returns the output printed when the player to move is in check and not <br>
+     * mated: the evasions, in the order availableMoves lists them, and the prompt. */
+    private String checkReport() {
+        PositionCache cache= CACHES.get();
+        int slot= cache.find(positionKey(lowerTurn));
+        int[] nextMoves= slot < 0 ? null : cache.evasions(slot);
+        if (nextMoves == null) {
+            int start= moveTop;
+            nextMoves= Arrays.copyOfRange(moveBuf, start, start + availableMoves(lowerTurn));
+            moveTop= start;
+            if (slot >= 0)
+                cache.setEvasions(slot, nextMoves);
+        }
+        String ret= lowerTurn ? "lower player is in check!" : "UPPER player is in check!";
+        ret+= "\n" + "Available moves:";
+        for (int move : nextMoves) {
+            ret+= "\n" + Move.toString(move);
+        }
+        ret+= "\n" + (lowerTurn ? "lower> " : "UPPER> ");
+        return ret;
+    }
+
+    /** Returns the Zobrist key of the current position with the player to <br>
+     * move given by boolean turn, lower if turn is true, else UPPER. */
+    long positionKey(boolean turn) {
+        return b.hash() ^ handKey ^ (turn ? 0 : Zobrist.UPPER_TO_MOVE);
+    }
+
     /** Returns true given boolean turn if the player is in check, <br>
      * false if not in check. If turn is true then player is lower, <br>
      * else player is UPPER. */
-    private boolean inCheck(boolean turn) {
-        if (turn) {
-            int[] dPosition= new int[2];
-            for (int i= 0; i < Board.BOARD_SIZE; i++) {
-                for (int j= 0; j < Board.BOARD_SIZE; j++) {
-                    Piece curr= b.getPiece(i, j);
-                    if (curr != null && curr.toString().equals("d")) {
-                        dPosition[0]= i;
-                        dPosition[1]= j;
-                    }
-                }
-            }
-            for (int i= 0; i < Board.BOARD_SIZE; i++) {
-                for (int j= 0; j < Board.BOARD_SIZE; j++) {
-                    Piece curr= b.getPiece(i, j);
-                    if (curr != null && !curr.getLower()) {
-                        if (curr.canMove(new int[] {i, j}, dPosition, b, false)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
-        } else {
-            int[] dPosition= new int[2];
-            for (int i= 0; i < Board.BOARD_SIZE; i++) {
-                for (int j= 0; j < Board.BOARD_SIZE; j++) {
-                    Piece curr= b.getPiece(i, j);
-                    if (curr != null && curr.toString().equals("D")) {
-                        dPosition[0]= i;
-                        dPosition[1]= j;
-                    }
+    boolean inCheck(boolean turn) {
+        if (Stats.ENABLED)
+            Stats.count(Stats.IN_CHECK);
+        return b.isAttacked(b.driveSquare(turn), !turn);
+    }
+
+    /** Writes the moves to get the player out of check given the boolean <br>
+     * turn into moveBuf from moveTop on, in the order they are listed to the <br>
+     * player, and returns how many there are. If turn is true, player is lower, <br>
+     * else player is UPPER. The caller releases the moves by restoring moveTop. */
+    private int availableMoves(boolean turn) {
+        long time= Stats.ENABLED ? System.nanoTime() : 0;
+        int start= moveTop;
+        int empty= ~ (b.occupied(true) | b.occupied(false)) & Board.ALL;
+        for (int type= 0; type < Board.NUM_TYPES; type++) {
+            int count= hands[Board.side(turn)][type];
+            if (count == 0)
+                continue;
+            for (int rest= empty; rest != 0; rest&= rest - 1) {
+                int drop= Move.drop(type, Integer.numberOfTrailingZeros(rest));
+                // a drop is listed once for each piece of its type in hand
+                if (testDrop(drop, turn)) {
+                    for (int i= 0; i < count; i++)
+                        pushMove(drop);
                 }
             }
-            for (int i= 0; i < Board.BOARD_SIZE; i++) {
-                for (int j= 0; j < Board.BOARD_SIZE; j++) {
-                    Piece curr= b.getPiece(i, j);
-                    if (curr != null && curr.getLower()) {
-                        if (curr.canMove(new int[] {i, j}, dPosition, b, false)) {
-                            return true;
-                        }
-                    }
-                }
+        }
+        for (int rest= b.occupied(turn); rest != 0; rest&= rest - 1) {
+            int from= Integer.numberOfTrailingZeros(rest);
+            for (int to= b.attacks(from); to != 0; to&= to - 1) {
+                int move= Move.move(from, Integer.numberOfTrailingZeros(to), false);
+                if (testMove(move, turn))
+                    pushMove(move);
             }
-            return false;
         }
+        if (Stats.ENABLED)
+            Stats.record(Stats.AVAILABLE_MOVES, time);
+        return moveTop - start;
     }
 
-    /** Returns a list of moves to get the player out of check <br>
-     * given the boolean turn. If turn is true, player is lower, else <br>
-     * player is UPPER. */
-    private List<String> availableMoves(boolean turn) {
-        List<String> ret= new ArrayList<>();
-        List<String> caps= new ArrayList<>();
-        if (turn) {
-            for (String i : lowerCaptures) {
-                caps.add(i);
+    /** Returns true if the player given the boolean turn has a move to get out <br>
+     * of check, stopping at the first one found. If turn is true, player is <br>
+     * lower, else player is UPPER. */
+    private boolean hasEvasion(boolean turn) {
+        for (int rest= b.occupied(turn); rest != 0; rest&= rest - 1) {
+            int from= Integer.numberOfTrailingZeros(rest);
+            for (int to= b.attacks(from); to != 0; to&= to - 1) {
+                if (testMove(Move.move(from, Integer.numberOfTrailingZeros(to), false), turn))
+                    return true;
             }
-        } else {
-            for (String i : upperCaptures) {
-                caps.add(i);
+        }
+        int empty= ~ (b.occupied(true) | b.occupied(false)) & Board.ALL;
+        for (int type= 0; type < Board.NUM_TYPES; type++) {
+            if (hands[Board.side(turn)][type] == 0)
+                continue;
+            for (int rest= empty; rest != 0; rest&= rest - 1) {
+                if (testDrop(Move.drop(type, Integer.numberOfTrailingZeros(rest)), turn))
+                    return true;
             }
         }
-        List<int[]> myPieces= new ArrayList<>();
-        for (int i= 0; i < Board.BOARD_SIZE; i++) {
-            for (int j= 0; j < Board.BOARD_SIZE; j++) {
-                int[] finalPos= new int[] {i, j};
-                for (String potentialDrop : caps) {
-                    String move= "drop " + potentialDrop.toLowerCase() + " "
-                            + convertCoords(finalPos);
-                    if (testDrop(move, turn))
-                        ret.add(move);
-                }
-                Piece myPiece= b.getPiece(i, j);
-                if (myPiece != null && myPiece.getLower() == lowerTurn)
-                    myPieces.add(finalPos);
+        return false;
+    }
+
+    /** Returns the number of moves to get the player out of check given <br>
+     * the boolean turn, as listed by availableMoves. If turn is true, player <br>
+     * is lower, else player is UPPER. */
+    int countAvailableMoves(boolean turn) {
+        int start= moveTop;
+        int n= availableMoves(turn);
+        moveTop= start;
+        return n;
+    }
+
+    /** Appends move m to moveBuf, growing it if it is full. */
+    private void pushMove(int m) {
+        if (moveTop == moveBuf.length)
+            moveBuf= Arrays.copyOf(moveBuf, moveBuf.length * 2);
+        moveBuf[moveTop++]= m;
+    }
+
+    /** Returns the name of a piece of the given type in the hand of <br>
+     * the player, lowercase if turn is true, else uppercase. */
+    private static String handName(int type, boolean turn) {
+        return HAND_NAMES[Board.side(turn)][type];
+    }
+
+    /** Writes every legal move and drop of the player given the boolean turn <br>
+     * into buf from index start on and returns how many there are. If turn is <br>
+     * true, player is lower, else player is UPPER. A move that may promote is <br>
+     * written both with and without promotion. If capturesOnly is true, only <br>
+     * board moves that capture are written. */
+    int legalMoves(boolean turn, int[] buf, int start, boolean capturesOnly) {
+        int end= start + candidateMoves(turn, buf, start, capturesOnly);
+        int n= start;
+        for (int i= start; i < end; i++) {
+            if (isLegal(buf[i], turn))
+                buf[n++]= buf[i];
+        }
+        return n - start;
+    }
+
+    /** Writes the moves and drops legalMoves chooses from into buf from index <br>
+     * start on, in the same order, and returns how many there are: every drop <br>
+     * of a piece in hand on an empty square and every move of a piece of the <br>
+     * player given the boolean turn, with and without promotion, whether or not <br>
+     * it is legal. If turn is true, player is lower, else player is UPPER. If <br>
+     * capturesOnly is true, only board moves that capture are written. */
+    int candidateMoves(boolean turn, int[] buf, int start, boolean capturesOnly) {
+        int n= start;
+        if (!capturesOnly) {
+            int empty= ~ (b.occupied(true) | b.occupied(false)) & Board.ALL;
+            for (int type= 0; type < Board.NUM_TYPES; type++) {
+                if (handCount(turn, type) == 0)
+                    continue;
+                for (int rest= empty; rest != 0; rest&= rest - 1)
+                    buf[n++]= Move.drop(type, Integer.numberOfTrailingZeros(rest));
             }
         }
-        for (int i= 0; i < Board.BOARD_SIZE; i++) {
-            for (int j= 0; j < Board.BOARD_SIZE; j++) {
-                int[] finalPos= new int[] {i, j};
-                for (int[] pos : myPieces) {
-                    String move= "move " + convertCoords(pos) + " " + convertCoords(finalPos);
-                    if (testMove(move, turn))
-                        ret.add(move);
-                }
+        int targets= capturesOnly ? b.occupied(!turn) : Board.ALL;
+        for (int rest= b.occupied(turn); rest != 0; rest&= rest - 1) {
+            int from= Integer.numberOfTrailingZeros(rest);
+            for (int to= b.keptAttacks(from) & targets; to != 0; to&= to - 1) {
+                int move= Move.move(from, Integer.numberOfTrailingZeros(to), false);
+                buf[n++]= move;
+                boolean autoPromotes= b.typeAt(from) == Board.PREVIEW
+                        && Move.to(move) % Board.BOARD_SIZE == (turn ? 4 : 0);
+                if (!autoPromotes)
+                    buf[n++]= Move.move(from, Move.to(move), true);
             }
         }
-        Collections.sort(ret);
-        return ret;
+        return n - start;
     }
 
-    /** Returns true if String move on boolean turn will remove <br>
-     * player from check. If turn is true, player is lower, else <br>
-     * player is UPPER. The move input is a valid move command <br>
-     * as specified by BoxShogi rules.  */
-    private boolean testMove(String move, boolean turn) {
-        boolean retVal= false;
-        String[] oneMove= move.split(" ");
-        assert oneMove[0].equals("move");
-        int[] initPos= convertXY(oneMove[1]);
-        int[] toPos= convertXY(oneMove[2]);
-        Piece curPiece= b.getPiece(initPos[0], initPos[1]);
-        if (isLegalMove(initPos, toPos, curPiece, false, turn)) {
-            Piece enemyPiece= b.getPiece(toPos[0], toPos[1]);
-            commitMove(initPos, toPos, curPiece, turn);
-            if (!inCheck(turn))
-                retVal= true;
-            b.setBoardPiece(initPos[0], initPos[1], curPiece);
-            b.setBoardPiece(toPos[0], toPos[1], enemyPiece);
-            if (enemyPiece != null) {
-                Piece newPiece= enemyPiece.beenCaptured();
-                String enemyString= newPiece.toString();
-                if (turn) {
-                    for (int i= lowerCaptures.size() - 1; i >= 0; i--) {
-                        if (lowerCaptures.get(i).equals(enemyString)) {
-                            lowerCaptures.remove(i);
-                            break;
-                        }
-                    }
-                } else {
-                    for (int i= upperCaptures.size() - 1; i >= 0; i--) {
-                        if (upperCaptures.get(i).equals(enemyString)) {
-                            upperCaptures.remove(i);
-                            break;
-                        }
-                    }
-                }
+    /** Returns true if move or drop m, as written by candidateMoves, is legal <br>
+     * for the player given the boolean turn. If turn is true, player is lower, <br>
+     * else player is UPPER. */
+    boolean isLegal(int m, boolean turn) {
+        return Move.isDrop(m) ? testDrop(m, turn) : testMove(m, turn);
+    }
+
+    /** Returns the number of pieces of the given type in the hand of the <br>
+     * player, lower if lower is true. */
+    int handCount(boolean lower, int type) {
+        return hands[Board.side(lower)][type];
+    }
+
+    /** Puts a piece of the given type at index pos of the hand of side, <br>
+     * after the pieces captured before it. */
+    private void addToHand(int side, int type, int pos) {
+        int[] order= handOrder[side];
+        System.arraycopy(order, pos, order, pos + 1, handSize[side] - pos);
+        order[pos]= type;
+        handSize[side]++;
+        hands[side][type]++;
+        handKey+= Zobrist.HANDS[side][type];
+        handScore+= Evaluation.HANDS[side][type];
+    }
+
+    /** Returns the index of the first captured piece of the given type in <br>
+     * the hand of side, which must hold one. */
+    private int handIndex(int side, int type) {
+        int pos= 0;
+        while (handOrder[side][pos] != type)
+            pos++;
+        return pos;
+    }
+
+    /** Takes the piece at index pos out of the hand of side. */
+    private void removeFromHand(int side, int pos) {
+        int[] order= handOrder[side];
+        int type= order[pos];
+        System.arraycopy(order, pos + 1, order, pos, handSize[side] - pos - 1);
+        handSize[side]--;
+        hands[side][type]--;
+        handKey-= Zobrist.HANDS[side][type];
+        handScore-= Evaluation.HANDS[side][type];
+    }
+
+    /** Returns the sum of the scores of the pieces in both hands given by <br>
+     * Evaluation, positive for lower. */
+    int handScore() {
+        return handScore;
+    }
+
+    /** Returns the types of the pieces in the hand of the player, lower if <br>
+     * lower is true, in the order they were captured. */
+    int[] hand(boolean lower) {
+        return Arrays.copyOf(handOrder[Board.side(lower)], handSize[Board.side(lower)]);
+    }
+
+    /** Replaces the position with the pieces of the codes in codes, indexed by <br>
+     * square as in Board (-1 for an empty square), and the number of pieces of <br>
+     * each type in hand in counts, indexed by [side][type] as in Board, with <br>
+     * lower to move if lowerTurn is true and no turn played yet. */
+    void setPosition(int[] codes, int[][] counts, boolean lowerTurn) {
+        for (int sq= 0; sq < Board.NUM_SQUARES; sq++) {
+            if (b.pieceCode(sq) != codes[sq])
+                b.setPieceCode(sq, codes[sq]);
+        }
+        for (int side= Board.LOWER; side <= Board.UPPER; side++) {
+            while (handSize[side] > 0)
+                removeFromHand(side, handSize[side] - 1);
+            for (int type= 0; type < Board.NUM_TYPES; type++) {
+                for (int i= 0; i < counts[side][type]; i++)
+                    addToHand(side, type, handSize[side]);
             }
         }
+        this.lowerTurn= lowerTurn;
+        numTurns= 0;
+        gameOver= false;
+        undoTop= 0;
+    }
+
+    /** Returns the board that BoxShogi is played on. */
+    Board getBoard() {
+        return b;
+    }
+
+    /** Returns true if it is the lower player's turn. */
+    boolean isLowerTurn() {
+        return lowerTurn;
+    }
+
+    /** Returns the number of turns the game has gone on for. */
+    int getNumTurns() {
+        return numTurns;
+    }
+
+    /** Returns whether or not the game has ended. */
+    boolean isGameOver() {
+        return gameOver;
+    }
+
+    /** Returns true if board move m on boolean turn will remove <br>
+     * player from check. If turn is true, player is lower, else <br>
+     * player is UPPER. */
+    private boolean testMove(int m, boolean turn) {
+        long start= Stats.ENABLED ? System.nanoTime() : 0;
+        boolean retVal= isLegalMove(Move.from(m), Move.to(m), Move.isPromote(m), turn)
+                && leavesNoCheck(m, turn);
+        if (Stats.ENABLED)
+            Stats.record(Stats.TEST_MOVE, start);
         return retVal;
     }
 
-    /** Returns true if String drop on boolean turn will remove <br>
+    /** Returns true if drop m on boolean turn will remove <br>
      * player from check. If turn is true, player is lower, else <br>
-     * player is UPPER. The drop input is a drop move command <br>
-     * as specified by BoxShogi rules.  */
-    private boolean testDrop(String drop, boolean turn) {
-        boolean retVal= false;
-        String[] dropMove= drop.split(" ");
-        assert dropMove[0].equals("drop");
-        int[] dropPos= convertXY(dropMove[2]);
-        if (isLegalDrop(dropMove[1], dropPos, turn)) {
-            Piece newPiece= turn ? convertStrToPiece(dropMove[1], false)
-                    : convertStrToPiece(dropMove[1].toUpperCase(), false);
-            int pPos= turn ? lowerCaptures.indexOf(dropMove[1])
-                    : upperCaptures.indexOf(dropMove[1].toUpperCase());
-            commitMove(dropPos, newPiece, turn);
-            if (!inCheck(turn))
-                retVal= true;
-            b.setBoardPiece(dropPos[0], dropPos[1], null);
-            if (turn)
-                lowerCaptures.add(pPos, dropMove[1]);
-            else
-                upperCaptures.add(pPos, dropMove[1].toUpperCase());
-        }
+     * player is UPPER. */
+    private boolean testDrop(int m, boolean turn) {
+        long start= Stats.ENABLED ? System.nanoTime() : 0;
+        boolean retVal= isLegalDrop(Move.dropType(m), Move.to(m), turn) && leavesNoCheck(m, turn);
+        if (Stats.ENABLED)
+            Stats.record(Stats.TEST_DROP, start);
         return retVal;
     }
 
-    /** Returns true if a legal move of Piece curPiece with boolean pro from init <br>
-     * to moveTo given boolean turn is valid and false otherwise. If turn is true, <br>
-     * player is lower, and if false then UPPER. The boolean pro is true if curPiece <br>
-     * is promoted and false otherwise. */
-    private boolean isLegalMove(int[] init, int[] moveTo, Piece curPiece, boolean pro,
-            boolean turn) {
-        if (curPiece == null || curPiece.getLower() != turn
-                || !curPiece.canMove(init, moveTo, b, false))
+    /** Returns true if playing legal move or drop m on boolean turn leaves <br>
+     * the player out of check. If turn is true, player is lower, else <br>
+     * player is UPPER. */
+    private boolean leavesNoCheck(int m, boolean turn) {
+        makeMove(m, turn);
+        boolean retVal= !inCheck(turn);
+        unmakeMove();
+        return retVal;
+    }
+
+    /** Returns true if a legal move of the piece on square init with boolean pro <br>
+     * to square moveTo given boolean turn is valid and false otherwise. If turn <br>
+     * is true, player is lower, and if false then UPPER. The boolean pro is true if <br>
+     * the piece is to be promoted and false otherwise. */
+    private boolean isLegalMove(int init, int moveTo, boolean pro, boolean turn) {
+        if (!b.isOccupied(init) || b.isLower(init) != turn || !b.canMove(init, moveTo))
             return false;
         if (pro) {
-            if (curPiece.getPromoted())
+            int type= b.typeAt(init);
+            if (b.isPromoted(init) || type == Board.DRIVE || type == Board.SHIELD)
                 return false;
-            if (curPiece.getLower() && (init[1] == 4 || moveTo[1] == 4)
-                    || !curPiece.getLower() && (init[1] == 0 || moveTo[1] == 0)) {
-                if (!curPiece.promote())
-                    return false;
-                return true;
-            }
-            return false;
-        }
-        if (curPiece.toString().equals("p") && moveTo[1] == 4
-                || curPiece.toString().equals("P") && moveTo[1] == 0) {
-            curPiece.promote();
+            int zone= turn ? 4 : 0;
+            return init % Board.BOARD_SIZE == zone || moveTo % Board.BOARD_SIZE == zone;
         }
         return true;
     }
 
-    /** Returns true if a legal drop of String piece to dropPos with <br>
-     * the given boolean turn is valid and false otherwise. If turn is true, <br>
-     * player is lower, and if false then UPPER. The piece is represented as <br>
-     * a lowercase string as given by the drop command from the user. */
-    private boolean isLegalDrop(String piece, int[] dropPos, boolean turn) {
-        if (b.isOccupied(dropPos[0], dropPos[1]))
+    /** Returns true if a legal drop of a piece of the given type to square <br>
+     * dropPos with the given boolean turn is valid and false otherwise. If turn <br>
+     * is true, player is lower, and if false then UPPER. */
+    private boolean isLegalDrop(int type, int dropPos, boolean turn) {
+        if (b.isOccupied(dropPos))
             return false;
-        if (turn) {
-            if (!lowerCaptures.contains(piece)) {
+        if (hands[Board.side(turn)][type] == 0)
+            return false;
+        if (type == Board.PREVIEW) {
+            if (dropPos % Board.BOARD_SIZE == (turn ? 4 : 0))
                 return false;
-            }
-            if (piece.equals("p")) {
-                if (dropPos[1] == 4)
-                    return false;
-                for (int i= 0; i < Board.BOARD_SIZE; i++) {
-                    Piece potential= b.getPiece(dropPos[0], i);
-                    if (potential != null && potential.toString().equals("p"))
-                        return false;
-                }
-            }
-        } else {
-            if (!upperCaptures.contains(piece.toUpperCase()))
+            if ( (b.pieces(turn, Board.PREVIEW) & ~b.promoted()
+                    & Board.COLUMNS[dropPos / Board.BOARD_SIZE]) != 0)
                 return false;
-            if (piece.equals("p")) {
-                if (dropPos[1] == 0)
-                    return false;
-                for (int i= 0; i < Board.BOARD_SIZE; i++) {
-                    Piece potential= b.getPiece(dropPos[0], i);
-                    if (potential != null && potential.toString().equals("P"))
-                        return false;
-                }
-            }
-        }
-        if (piece.equals("p")) {
             boolean retVal= true;
-            int pPos= turn ? lowerCaptures.indexOf("p") : upperCaptures.indexOf("P");
-            Piece newPiece= turn ? convertStrToPiece("p", false) : convertStrToPiece("P", false);
-            commitMove(dropPos, newPiece, turn);
-            if (inCheck(!turn) && availableMoves(!turn).size() == 0) {
+            makeMove(Move.drop(type, dropPos), turn);
+            if (inCheck(!turn) && !hasEvasion(!turn))
                 retVal= false;
-            }
-            b.setBoardPiece(dropPos[0], dropPos[1], null);
-            if (turn)
-                lowerCaptures.add(pPos, "p");
-            else
-                upperCaptures.add(pPos, "P");
+            unmakeMove();
             return retVal;
         }
         return true;
     }
 
-    /** Executes a legal move command given the initial coordinates initPos and <br>
-     * drop coordinates moveTo, the piece to drop Piece curPiece, and the boolean <br>
-     * turn of the player with true being lower and false being UPPER. Also checks to see <br>
-     * if the committed move will move the current player into check, and if so, reverses <br>
+    /** Executes legal move or drop m given the boolean turn of the player with <br>
+     * true being lower and false being UPPER. Also checks to see if a committed <br>
+     * board move will move the current player into check, and if so, reverses <br>
      * the move and ends the game. */
-    private void commitMove(int[] initPos, int[] moveTo, Piece curPiece, boolean turn) {
-        boolean alreadyCheck= inCheck(turn);
-        b.setBoardPiece(initPos[0], initPos[1], null);
-        Piece potentialCap= b.getPiece(moveTo[0], moveTo[1]);
-        Piece newCap= null;
-        String capPiece= "";
-        if (potentialCap != null) {
-            newCap= potentialCap.beenCaptured();
-            capPiece= newCap.toString();
-            if (turn)
-                lowerCaptures.add(capPiece);
-            else
-                upperCaptures.add(capPiece);
-        }
-        b.setBoardPiece(moveTo[0], moveTo[1], curPiece);
+    private void commitMove(int m, boolean turn) {
+        boolean alreadyCheck= Move.isDrop(m) || inCheck(turn);
+        makeMove(m, turn);
         if (!alreadyCheck && inCheck(turn)) {
-            b.setBoardPiece(initPos[0], initPos[1], curPiece);
-            b.setBoardPiece(moveTo[0], moveTo[1], potentialCap);
-            if (potentialCap != null) {
-                if (turn) {
-                    for (int i= lowerCaptures.size() - 1; i >= 0; i--) {
-                        if (lowerCaptures.get(i).equals(capPiece)) {
-                            lowerCaptures.remove(i);
-                            break;
-                        }
-                    }
-                } else {
-                    for (int i= upperCaptures.size() - 1; i >= 0; i--) {
-                        if (upperCaptures.get(i).equals(capPiece)) {
-                            upperCaptures.remove(i);
-                            break;
-                        }
-                    }
-                }
-            }
+            unmakeMove();
             gameOver= true;
+        } else {
+            // a committed move is never taken back, so its undo record is dropped
+            undoTop--;
         }
     }
 
-    /** Executes a legal drop command given the drop coordinates moveTo, <br>
-     * the piece to drop Piece curPiece, and the boolean turn of the player <br>
-     * with true being lower and false being UPPER. */
-    private void commitMove(int[] moveTo, Piece curPiece, boolean turn) {
-        if (turn)
-            lowerCaptures.remove(curPiece.toString());
-        else
-            upperCaptures.remove(curPiece.toString());
-        b.setBoardPiece(moveTo[0], moveTo[1], curPiece);
+    /** Plays move or drop m for the boolean turn of the player with true being <br>
+     * lower and false being UPPER, without checking its legality, and pushes <br>
+     * the record unmakeMove needs to take it back. Captured pieces go to the <br>
+     * end of the player's hand, and a preview reaching the last row is promoted. */
+    void makeMove(int m, boolean turn) {
+        int side= Board.side(turn);
+        int to= Move.to(m);
+        undoMoves[undoTop]= m;
+        if (Move.isDrop(m)) {
+            undoHands[undoTop]= handIndex(side, Move.dropType(m));
+            removeFromHand(side, undoHands[undoTop]);
+            b.setPieceCode(to, Board.code(Move.dropType(m), turn, false));
+        } else {
+            int from= Move.from(m);
+            int captured= b.pieceCode(to);
+            if (captured >= 0)
+                addToHand(side, b.typeAt(to), handSize[side]);
+            undoCaptured[undoTop]= captured;
+            undoPromoted[undoTop]= b.isPromoted(from);
+            b.movePiece(from, to);
+            if (Move.isPromote(m)
+                    || b.typeAt(to) == Board.PREVIEW && to % Board.BOARD_SIZE == (turn ? 4 : 0))
+                b.setPromoted(to, true);
+        }
+        undoTop++;
+    }
+
+    /** Plays move or drop m, known to be legal, for the player to move and <br>
+     * passes the turn, without looking for check or the end of the game. */
+    void replay(int m) {
+        makeMove(m, lowerTurn);
+        undoTop--;
+        lowerTurn= !lowerTurn;
+        numTurns++;
+    }
+
+    /** Takes back the last move or drop played by makeMove, restoring the <br>
+     * board, the promotion of the moved piece and the player's hand. */
+    void unmakeMove() {
+        undoTop--;
+        int m= undoMoves[undoTop];
+        int to= Move.to(m);
+        int side= Board.side(b.isLower(to));
+        if (Move.isDrop(m)) {
+            b.setPieceCode(to, -1);
+            addToHand(side, Move.dropType(m), undoHands[undoTop]);
+        } else {
+            int from= Move.from(m);
+            b.movePiece(to, from);
+            b.setPromoted(from, undoPromoted[undoTop]);
+            b.setPieceCode(to, undoCaptured[undoTop]);
+            if (undoCaptured[undoTop] >= 0)
+                removeFromHand(side, handSize[side] - 1);
+        }
     }
 
     /** Returns the board representation as a string. */
@@ -514,54 +714,215 @@ public class Game {
      * last move being documented as String lastRemoved and the <br>
      * statement to print as String justMoved. */
     private static void printGame(Game g, String lastRemoved, String justMoved) {
+        System.out.print(formatGame(g, lastRemoved, justMoved));
+    }
+
+    /** Returns the current state of the game in the standard BoxShogi <br>
+     * console format given a Game g, as printed by printGame. */
+    static String formatGame(Game g, String lastRemoved, String justMoved) {
+        String newLine= System.lineSeparator();
+        StringBuilder str= new StringBuilder();
         if (g.numTurns != 0) {
-            System.out.print( (!g.lowerTurn ? "lower" : "UPPER") + " player action: ");
-            System.out.println(lastRemoved);
+            str.append(!g.lowerTurn ? "lower" : "UPPER").append(" player action: ");
+            str.append(lastRemoved).append(newLine);
         }
-        System.out.println(g.printBoard());
-        System.out.print("Captures UPPER:");
-        for (String i : g.upperCaptures) {
-            System.out.print(" " + i);
+        str.append(g.printBoard()).append(newLine);
+        str.append("Captures UPPER:");
+        for (int i= 0; i < g.handSize[Board.UPPER]; i++) {
+            str.append(" ").append(handName(g.handOrder[Board.UPPER][i], false));
         }
-        System.out.println("");
-        System.out.print("Captures lower:");
-        for (String i : g.lowerCaptures) {
-            System.out.print(" " + i);
+        str.append(newLine);
+        str.append("Captures lower:");
+        for (int i= 0; i < g.handSize[Board.LOWER]; i++) {
+            str.append(" ").append(handName(g.handOrder[Board.LOWER][i], true));
         }
-        System.out.println("");
-        System.out.println("");
-        System.out.print(justMoved);
+        str.append(newLine).append(newLine);
+        str.append(justMoved);
+        return str.toString();
     }
 
     /** Run Game on the arguments listed in args. <br>
-     * If args doesn't match -f <fileName> or -i, the program <br>
-     * exits after notifying the user of an illegal call. <br>
+     * If args doesn't match -f <fileName> or -i, either followed by <br>
+     * -l <logFile> to log the game, or another mode, the program <br>
+     * exits after notifying the user of an illegal call. With -stats <br>
+     * anywhere in args, the figures of Stats are recorded and printed. <br>
      * If args does match, a new Game will be instantiated of the <br>
      * respective mode, and the game is run by parsing moves <br>
      * and printing the board until the game is over. */
     public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("-stats")) {
+            // set before Stats is loaded, since Stats.ENABLED is read only once
+            System.setProperty("boxshogi.stats", "true");
+            args= Arrays.stream(args).filter(arg -> !arg.equals("-stats")).toArray(String[]::new);
+            Stats.start();
+        }
         Game shogi= null;
         if (args[0].equals("-f")) {
-            shogi= new Game(Utils.parseTestCase(args[1]));
-            String justMoved= "";
-            String lastRemoved= "";
-            while (!shogi.gameOver && !shogi.moves.isEmpty()) {
-                justMoved= shogi.move(shogi.moves.get(0), shogi.lowerTurn);
-                lastRemoved= shogi.moves.remove(0);
-            }
-            printGame(shogi, lastRemoved, justMoved);
+            shogi= new Game(Utils.readTestCase(args[1]));
+            shogi.log= GameLog.open(args, shogi);
+            shogi.playFile();
+            if (shogi.log != null)
+                shogi.log.close();
         } else if (args[0].equals("-i")) {
             shogi= new Game();
+            shogi.log= GameLog.open(args, shogi);
             BufferedReader in= new BufferedReader(new InputStreamReader(System.in));
             String line= null;
-            printGame(shogi, "", "lower> ");
+            System.out.print(shogi.startOutput());
             while (!shogi.gameOver) {
                 line= in.readLine().trim();
-                printGame(shogi, line, shogi.move(line, shogi.lowerTurn));
+                System.out.print(shogi.play(line));
             }
+            if (shogi.log != null)
+                shogi.log.close();
+        } else if (args[0].equals("-a")) {
+            playEngine(args);
+        } else if (args[0].equals("-p")) {
+            Perft.run(args);
+        } else if (args[0].equals("-b")) {
+            Batch.run(args);
+        } else if (args[0].equals("-s")) {
+            Server.run(args);
+        } else if (args[0].equals("-m")) {
+            Tournament.run(args);
+        } else if (args[0].equals("-k")) {
+            Book.run(args);
+        } else if (args[0].equals("-e")) {
+            Tablebase.run(args);
+        } else if (args[0].equals("-c")) {
+            Mate.run(args);
+        } else if (args[0].equals("-r")) {
+            GameLog.run(args);
+        } else if (args[0].equals("-d")) {
+            Daemon.run(args);
+        } else if (args[0].equals("-u")) {
+            Mcts.run(args);
         } else {
-            System.out.println(
-                    "Invalid mode. Please type -i for interactive mode or -f for file mode.");
+            System.out.println("Invalid mode. Please type -i for interactive mode, -f for file "
+                    + "mode, -a for engine mode, -p for perft mode, -b for batch mode, -s "
+                    + "for server mode, -m for tournament mode, -k to build a book, -e for "
+                    + "endgame tablebases, -c for mate solving, -r to review a game log, "
+                    + "-d for daemon mode or -u for Monte Carlo tree search.");
+        }
+    }
+
+    /** Plays the moves of file mode until the game is over or the moves <br>
+     * run out, and prints the final state of the game. */
+    private void playFile() {
+        System.out.print(fileOutput());
+    }
+
+    /** Returns the state of the game as printed at the start of interactive mode. */
+    String startOutput() {
+        return formatGame(this, "", "lower> ");
+    }
+
+    /** Plays command line for the player to move as in interactive mode and <br>
+     * returns the state of the game printed after it. */
+    String play(String line) {
+        return formatGame(this, line, move(line, lowerTurn));
+    }
+
+    /** Plays move or drop m for the player to move, or resigns if m is <br>
+     * Move.NONE, and returns the statement printed after it, or null if it <br>
+     * puts the opponent in check without mating: the evasions are not listed, <br>
+     * since the callers only need to know how the game ends. */
+    String playMove(int m) {
+        return move(m, lowerTurn, false);
+    }
+
+    /** Plays move or drop m for the player to move and returns the statement <br>
+     * file mode prints after it, with the evasions if it gives check. */
+    String playReported(int m) {
+        return move(m, lowerTurn, true);
+    }
+
+    /** Plays the moves of file mode until the game is over or the moves <br>
+     * run out, and returns the final state of the game as printed by file mode. */
+    String fileOutput() {
+        String[] last= replayMoves();
+        return formatGame(this, last[0], last[1]);
+    }
+
+    /** Plays the moves of file mode until the game is over or the moves <br>
+     * run out, and returns the last move played and the output of playing it. <br>
+     * The evasions of a check are listed only if the last move gives it. */
+    String[] replayMoves() {
+        String justMoved= "";
+        String lastRemoved= "";
+        while (!gameOver && moves.hasNext()) {
+            lastRemoved= moves.next();
+            justMoved= move(lastRemoved, lowerTurn, false);
+        }
+        if (justMoved == null)
+            justMoved= checkReport();
+        try {
+            moves.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new String[] {lastRemoved, justMoved};
+    }
+
+    /** Runs engine mode given args of the form <br>
+     * -a [millis] [-f fileName] [-k bookFile]. <br>
+     * With a file, the moves of the file are played as in file mode and the <br>
+     * engine then reports its best move for the player to move. Without one, <br>
+     * a human plays lower interactively against the engine playing UPPER. <br>
+     * The engine takes at most millis milliseconds per move, and plays the <br>
+     * moves of the book in bookFile in the positions it has. Any other <br>
+     * argument gets the usage line. */
+    private static void playEngine(String[] args) throws Exception {
+        long millis= DEFAULT_ENGINE_MILLIS;
+        String path= null;
+        String bookPath= null;
+        for (int i= 1; i < args.length; i++) {
+            if (args[i].equals("-f") && i + 1 < args.length)
+                path= args[++i];
+            else if (args[i].equals("-k") && i + 1 < args.length)
+                bookPath= args[++i];
+            else if (args[i].matches("\\d{1,18}"))
+                millis= Long.parseLong(args[i]);
+            else {
+                System.out.println("Usage: -a [millis] [-f fileName] [-k bookFile]");
+                return;
+            }
+        }
+        Book book= bookPath == null ? null : new Book(bookPath);
+        if (path != null) {
+            Game shogi= new Game(Utils.readTestCase(path));
+            shogi.playFile();
+            if (!shogi.gameOver) {
+                Engine engine= new Engine(shogi);
+                engine.setBook(book);
+                int best= engine.search(millis);
+                System.out.println("");
+                System.out.println(
+                        "Best move: " + (best == Move.NONE ? "none" : Move.toString(best)));
+                System.out.println("Search: " + engine.report());
+            }
+            return;
+        }
+        Game shogi= new Game();
+        Engine engine= new Engine(shogi);
+        engine.setBook(book);
+        BufferedReader in= new BufferedReader(new InputStreamReader(System.in));
+        printGame(shogi, "", "lower> ");
+        while (!shogi.gameOver) {
+            String line= in.readLine().trim();
+            printGame(shogi, line, shogi.move(line, shogi.lowerTurn));
+            if (shogi.gameOver)
+                break;
+            int best= engine.search(millis);
+            System.out.println("");
+            System.out.println("UPPER engine: " + engine.report());
+            if (best == Move.NONE) {
+                // no legal move is left to UPPER, which resigns
+                shogi.gameOver= true;
+                System.out.println("lower player wins.  UPPER resigns.");
+                break;
+            }
+            printGame(shogi, Move.toString(best), shogi.move(best, shogi.lowerTurn, true));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,236 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** An instance is a game record read from a binary log file mapped into <br>
+ * memory. A log holds a 16-byte header (the magic number, the snapshot <br>
+ * interval K and the snapshot size) followed by blocks, each made of a <br>
+ * snapshot of the position at a ply that is a multiple of K and the moves <br>
+ * played from it, at most K, two bytes each as packed by Move. Logs are <br>
+ * written append-only as a game is played, and every block has the same <br>
+ * size, so the position at any ply is found by reading one snapshot and <br>
+ * replaying fewer than K moves, whatever the length of the game. A log cut <br>
+ * short by a crash is read up to its last complete move. */
+public class GameLog {
+    /** The first eight bytes of a log file, "BOXLOG01". */
+    private final static long MAGIC= 0x424f584c4f473031L;
+
+    /** The length of the header, of a snapshot and of a move, in bytes. */
+    private final static int  HEADER= 16;
+
+    private final static int  SNAPSHOT= 96;
+
+    private final static int  MOVE= 2;
+
+    /** The most pieces a snapshot holds in each hand. */
+    private final static int  MAX_HAND= 32;
+
+    /** The snapshot interval used when none is given. */
+    private final static int  DEFAULT_INTERVAL= 16;
+
+    /** The mapped log file. */
+    private MappedByteBuffer  data;
+
+    /** The snapshot interval of the log, and the size of a block. */
+    private int               interval;
+
+    private int               blockSize;
+
+    /** The number of moves in the log, and of snapshots. */
+    private int               plies;
+
+    private int               snapshots;
+
+    /** Constructor: opens the log in the file at path. Throws an IOException <br>
+     * if the file cannot be read or is not a log. */
+    public GameLog(String path) throws IOException {
+        try (FileChannel channel= FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long length= channel.size();
+            if (length < HEADER + SNAPSHOT || length > Integer.MAX_VALUE)
+                throw new IOException("Not a game log: " + path);
+            data= channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        interval= data.getInt(8);
+        if (data.getLong(0) != MAGIC || data.getInt(12) != SNAPSHOT || interval <= 0)
+            throw new IOException("Not a game log: " + path);
+        blockSize= SNAPSHOT + interval * MOVE;
+        int blocks= (data.capacity() - HEADER) / blockSize;
+        int rest= (data.capacity() - HEADER) % blockSize;
+        // the last block has its snapshot and some of its moves, unless the
+        // snapshot ending the block before was cut short by a crash
+        plies= blocks * interval + Math.max(0, rest - SNAPSHOT) / MOVE;
+        snapshots= blocks + (rest >= SNAPSHOT ? 1 : 0);
+    }
+
+    /** Returns the number of moves in the log. */
+    public int plies() {
+        return plies;
+    }
+
+    /** Returns the snapshot interval of the log. */
+    public int interval() {
+        return interval;
+    }
+
+    /** Returns the offset of the move played at ply, counted from 0. */
+    private int moveOffset(int ply) {
+        return HEADER + ply / interval * blockSize + SNAPSHOT + ply % interval * MOVE;
+    }
+
+    /** Returns the move played at ply, counted from 0. */
+    public int move(int ply) {
+        return data.getShort(moveOffset(ply));
+    }
+
+    /** Returns a new game in the position of the log after the first ply moves. <br>
+     * The position is read from the last snapshot at or before ply and the moves <br>
+     * after it are replayed, fewer than the snapshot interval. Throws an <br>
+     * IllegalArgumentException if the log has fewer than ply moves. */
+    public Game seek(int ply) {
+        if (ply < 0 || ply > plies)
+            throw new IllegalArgumentException("No ply " + ply + " in a log of " + plies);
+        int block= Math.min(ply / interval, snapshots - 1);
+        int at= HEADER + block * blockSize;
+        Board b= new Board(true);
+        for (int sq= 0; sq < Board.NUM_SQUARES; sq++) {
+            int code= data.get(at + 5 + sq);
+            if (code >= 0)
+                b.setPieceCode(sq, code);
+        }
+        int[] upperHand= new int[data.get(at + 30)];
+        int[] lowerHand= new int[data.get(at + 31)];
+        for (int i= 0; i < upperHand.length; i++)
+            upperHand[i]= data.get(at + 32 + i);
+        for (int i= 0; i < lowerHand.length; i++)
+            lowerHand[i]= data.get(at + 32 + MAX_HAND + i);
+        Game g= new Game(b, upperHand, lowerHand, data.get(at + 4) == 1, data.getInt(at));
+        for (int p= block * interval; p < ply; p++)
+            g.replay(move(p));
+        return g;
+    }
+
+    /** An instance writes a log file as a game is played, appending each move <br>
+     * as it is made and a snapshot of the position every interval moves. */
+    static class Writer implements Closeable {
+        /** The log file, only ever written at its end. */
+        private FileChannel channel;
+
+        /** The snapshot interval, and the number of moves written. */
+        private int         interval;
+
+        private int         plies;
+
+        /** The bytes of the record being appended. */
+        private ByteBuffer  buf= ByteBuffer.allocate(MOVE + SNAPSHOT);
+
+        /** Constructor: creates the log file at path, replacing any file there, <br>
+         * for the game played from the position of Game g with a snapshot every <br>
+         * interval moves. */
+        Writer(String path, Game g, int interval) throws IOException {
+            this.interval= interval;
+            channel= FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buf.putLong(MAGIC).putInt(interval).putInt(SNAPSHOT);
+            write();
+            putSnapshot(g);
+            write();
+        }
+
+        /** Appends move m, which was just played in Game g, and a snapshot of <br>
+         * the position it led to if it ends an interval. */
+        void append(Game g, int m) throws IOException {
+            buf.putShort((short) m);
+            plies++;
+            if (plies % interval == 0)
+                putSnapshot(g);
+            write();
+        }
+
+        /** Puts a snapshot of the position of Game g into buf: the turns played, <br>
+         * the player to move, the piece code of each square and both hands. */
+        private void putSnapshot(Game g) {
+            Board b= g.getBoard();
+            int[] upperHand= g.hand(false);
+            int[] lowerHand= g.hand(true);
+            if (upperHand.length > MAX_HAND || lowerHand.length > MAX_HAND)
+                throw new IllegalStateException("Too many pieces in hand to log");
+            int start= buf.position();
+            buf.putInt(g.getNumTurns()).put((byte) (g.isLowerTurn() ? 1 : 0));
+            for (int sq= 0; sq < Board.NUM_SQUARES; sq++)
+                buf.put((byte) b.pieceCode(sq));
+            buf.put((byte) upperHand.length).put((byte) lowerHand.length);
+            for (int type : upperHand)
+                buf.put((byte) type);
+            buf.position(start + 32 + MAX_HAND);
+            for (int type : lowerHand)
+                buf.put((byte) type);
+            buf.position(start + SNAPSHOT);
+        }
+
+        /** Appends the bytes put into buf to the file with one write. */
+        private void write() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            buf.clear();
+        }
+
+        /** Closes the log file. */
+        @Override public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /** Returns a writer of a log of the game of Game g to the file named after <br>
+     * the -l flag of args, or null if there is none. */
+    static Writer open(String[] args, Game g) throws IOException {
+        for (int i= 1; i + 1 < args.length; i++) {
+            if (args[i].equals("-l"))
+                return new Writer(args[i + 1], g, DEFAULT_INTERVAL);
+        }
+        return null;
+    }
+
+    /** Runs log mode given args of the form -r logFile [ply]. Prints the game <br>
+     * in the log as file mode prints it after the given ply, by default the <br>
+     * last, followed by the number of moves in the log and the time taken. <br>
+     * The move of that ply is played again from the position before it, so the <br>
+     * statement after the board reports check, checkmate or the 400-turn tie <br>
+     * as file mode does. Illegal moves are not logged: a game that ended on one <br>
+     * is shown after its last legal move. A ply that is not a number or not in <br>
+     * the log gets a one-line error. */
+    static void run(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: -r logFile [ply]");
+            return;
+        }
+        long start= System.nanoTime();
+        GameLog log= new GameLog(args[1]);
+        int ply;
+        try {
+            ply= args.length > 2 ? Integer.parseInt(args[2]) : log.plies();
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: -r logFile [ply]");
+            return;
+        }
+        if (ply < 0 || ply > log.plies()) {
+            System.out.println("No ply " + ply + " in a log of " + log.plies() + " moves.");
+            return;
+        }
+        Game g= log.seek(Math.max(0, ply - 1));
+        String last= "";
+        String statement= g.isLowerTurn() ? "lower> " : "UPPER> ";
+        if (ply > 0) {
+            last= Move.toString(log.move(ply - 1));
+            statement= g.playReported(log.move(ply - 1));
+        }
+        System.out.print(Game.formatGame(g, last, statement));
+        System.out.println("");
+        System.out.println("Ply: " + ply + " of " + log.plies());
+        System.out.println("Time: " + (System.nanoTime() - start) / 1000 + " us");
+    }
+}
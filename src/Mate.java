@@ -0,0 +1,449 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** An instance solves mating problems: it proves or disproves that the player <br>
+ * to move in a Game can force checkmate by checking on every move, as in <br>
+ * tsume problems, with depth-first proof-number search (df-pn). The attacker <br>
+ * tries only the moves and drops that give check and the defender every legal <br>
+ * reply, and the proof and disproof numbers of the positions searched are kept <br>
+ * in a transposition table of the solver. A check not searched yet starts with <br>
+ * as many proof numbers as it has replies, so mates in one are seen at once. <br>
+ * The mate found is not always the shortest. A position repeated along the line <br>
+ * being searched counts as a failure of the attacker, and so does a line <br>
+ * deeper than MAX_PLY; the 400-turn tie rule is ignored. A disproof that rests <br>
+ * on a repetition of a position above it, or on the depth limit, holds only <br>
+ * on the line it was found on, so the table keeps that part of the line with <br>
+ * it and reuses it only where the line being searched has the same part. */
+public class Mate {
+    /** Results of solve: a forced mate, no forced mate, or no answer within the <br>
+     * node budget. */
+    final static int          MATE= 0, NO_MATE= 1, UNKNOWN= 2;
+
+    /** A proof or disproof number that cannot be reached: proven or disproven. */
+    private final static int  INFINITY= 100000000;
+
+    /** The deepest ply searched; deeper lines count as failures of the attacker. */
+    private final static int  MAX_PLY= 128;
+
+    /** Marks returned by search: a result that holds whatever the line to the <br>
+     * position, and a disproof that rests on the depth limit. A disproof that <br>
+     * rests on a repetition is marked by the ply of the position repeated. */
+    private final static int  FINAL= MAX_PLY, DEPTH_LIMIT= -1;
+
+    /** The room for moves generated at one ply. */
+    private final static int  MAX_MOVES= 2048;
+
+    /** The default number of entries of the transposition table, a power of two. */
+    private final static int  TT_SIZE= 1 << 18;
+
+    /** The default budget of nodes of a search. */
+    private final static long DEFAULT_NODES= 10000000;
+
+    /** The game whose position is solved. */
+    private Game      game;
+
+    /** Transposition table: key, whether it is used, proof and disproof numbers, <br>
+     * for proven positions the length of the mate found in plies and, for <br>
+     * positions disproven on one line only, the mark of the disproof, the ply <br>
+     * it was found at and the hash of the part of the line it rests on. The <br>
+     * mark is FINAL for every other position. */
+    private long[]    ttKeys;
+
+    private boolean[] ttUsed;
+
+    private int[]     ttProofs;
+
+    private int[]     ttDisproofs;
+
+    private short[]   ttLengths;
+
+    private int[]     ttMarks;
+
+    private int[]     ttPlies;
+
+    private long[]    ttLines;
+
+    /** The moves generated at each ply, the key of the position each leads to <br>
+     * and, for the checks of the attacker, the number of replies to each. */
+    private int[][]   moves;
+
+    private long[][]  childKeys;
+
+    private int[][]   replies;
+
+    /** For the moves at each ply, the mark of the disproof of the position <br>
+     * each leads to if it was disproven for the line being searched only, <br>
+     * else FINAL. */
+    private int[][]   loops;
+
+    /** The keys of the positions on the line being searched, indexed by ply, <br>
+     * and the hashes of its first plies: pathHashes[i] hashes path[0..i-1]. */
+    private long[]    path;
+
+    private long[]    pathHashes;
+
+    /** The powers of the multiplier of the line hashes. */
+    private long[]    powers;
+
+    /** Nodes searched by the current search, and its budget. */
+    private long      nodes;
+
+    private long      maxNodes;
+
+    /** Signals that the budget ran out. */
+    private boolean   stopped;
+
+    /** The line of the last mate found, and its length. */
+    private int[]     line;
+
+    private int       lineLength;
+
+    /** Constructor: a solver with an empty transposition table of the default size. */
+    public Mate() {
+        this(TT_SIZE);
+    }
+
+    /** Constructor: a solver with an empty transposition table of tableSize <br>
+     * entries, a power of two. */
+    public Mate(int tableSize) {
+        ttKeys= new long[tableSize];
+        ttUsed= new boolean[tableSize];
+        ttProofs= new int[tableSize];
+        ttDisproofs= new int[tableSize];
+        ttLengths= new short[tableSize];
+        ttMarks= new int[tableSize];
+        ttPlies= new int[tableSize];
+        ttLines= new long[tableSize];
+        moves= new int[MAX_PLY][MAX_MOVES];
+        childKeys= new long[MAX_PLY][MAX_MOVES];
+        replies= new int[MAX_PLY][MAX_MOVES];
+        loops= new int[MAX_PLY][MAX_MOVES];
+        path= new long[MAX_PLY];
+        pathHashes= new long[MAX_PLY + 1];
+        powers= new long[MAX_PLY + 1];
+        powers[0]= 1;
+        for (int i= 1; i <= MAX_PLY; i++)
+            powers[i]= powers[i - 1] * 0x9E3779B97F4A7C15L;
+        line= new int[MAX_PLY];
+    }
+
+    /** Searches at most maxNodes nodes for a forced mate by the player to move <br>
+     * in the position of Game g, and returns MATE, NO_MATE or UNKNOWN. The <br>
+     * position of g is left as it was. */
+    public int solve(Game g, long maxNodes) {
+        game= g;
+        this.maxNodes= maxNodes;
+        nodes= 0;
+        stopped= false;
+        lineLength= 0;
+        Arrays.fill(ttUsed, false);
+        boolean turn= g.isLowerTurn();
+        search(0, turn, true, INFINITY, INFINITY);
+        int slot= find(g.positionKey(turn));
+        if (slot >= 0 && ttProofs[slot] == 0) {
+            findLine(turn);
+            return MATE;
+        }
+        return slot >= 0 && ttDisproofs[slot] == 0 && ttMarks[slot] == FINAL ? NO_MATE : UNKNOWN;
+    }
+
+    /** Returns the nodes searched by the last search. */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /** Returns the mating line found by the last search, empty if there is none. */
+    public int[] getLine() {
+        return Arrays.copyOf(line, lineLength);
+    }
+
+    /** Searches the position of the game with the player given by turn to move, <br>
+     * ply plies below the root, the attacker if attacker is true, until its <br>
+     * proof number reaches thpn or its disproof number reaches thdn. Stores its <br>
+     * numbers in the transposition table and returns FINAL, unless it is <br>
+     * disproven only for the line being searched: then it returns DEPTH_LIMIT, <br>
+     * or the smallest ply of a repeated position the disproof rests on. */
+    private int search(int ply, boolean turn, boolean attacker, int thpn, int thdn) {
+        if (++nodes > maxNodes)
+            stopped= true;
+        long key= game.positionKey(turn);
+        int[] list= moves[ply];
+        long[] keys= childKeys[ply];
+        if (ply >= MAX_PLY - 1)
+            return DEPTH_LIMIT;
+        int n= generate(ply, turn, attacker);
+        if (n == 0) {
+            // no check to give fails the attacker; no reply is checkmate
+            store(key, attacker ? INFINITY : 0, attacker ? 0 : INFINITY, 0);
+            return FINAL;
+        }
+        path[ply]= key;
+        pathHashes[ply + 1]= pathHashes[ply] * powers[1] + key;
+        Arrays.fill(loops[ply], 0, n, FINAL);
+        int pn= 1;
+        int dn= 1;
+        int length= 0;
+        int mark= FINAL;
+        while (!stopped) {
+            // the child to search next, by its number to minimize, and the runner-up
+            int best= 0;
+            int bestValue= INFINITY + 1;
+            int second= INFINITY;
+            int bestProof= 0;
+            int bestDisproof= 0;
+            pn= attacker ? INFINITY : 0;
+            dn= attacker ? 0 : INFINITY;
+            length= attacker ? Short.MAX_VALUE : 0;
+            // the disproof of the attacker rests on every disproven child, that
+            // of the defender on the disproven child that holds on most lines
+            mark= attacker ? FINAL : DEPTH_LIMIT;
+            for (int i= 0; i < n; i++) {
+                // a check not searched yet is as hard to prove as it has replies
+                int cpn= attacker ? replies[ply][i] : 1;
+                int cdn= cpn == 0 ? INFINITY : 1;
+                int clength= 0;
+                int cmark= loops[ply][i] < FINAL ? loops[ply][i] : onPath(keys[i], ply);
+                int slot= find(keys[i]);
+                if (slot >= 0 && ttMarks[slot] < FINAL) {
+                    // a disproof found on another line is no disproof here
+                    int from= holds(slot, ply + 1);
+                    if (from == FINAL)
+                        slot= -1;
+                    else
+                        cmark= Math.min(cmark, from);
+                }
+                if (cmark < FINAL) {
+                    cpn= INFINITY;
+                    cdn= 0;
+                } else if (slot >= 0) {
+                    cpn= ttProofs[slot];
+                    cdn= ttDisproofs[slot];
+                    clength= ttLengths[slot];
+                }
+                int value= attacker ? cpn : cdn;
+                if (value < bestValue) {
+                    second= Math.min(second, bestValue);
+                    best= i;
+                    bestValue= value;
+                    bestProof= cpn;
+                    bestDisproof= cdn;
+                } else {
+                    second= Math.min(second, value);
+                }
+                if (cdn == 0)
+                    mark= attacker ? Math.min(mark, cmark) : Math.max(mark, cmark);
+                if (attacker) {
+                    pn= Math.min(pn, cpn);
+                    dn= Math.min(INFINITY, dn + cdn);
+                    if (cpn == 0)
+                        length= Math.min(length, clength + 1);
+                } else {
+                    pn= Math.min(INFINITY, pn + cpn);
+                    dn= Math.min(dn, cdn);
+                    length= Math.max(length, clength + 1);
+                }
+            }
+            if (pn >= thpn || dn >= thdn)
+                break;
+            int cthpn= attacker ? Math.min(thpn, second + 1) : thpn - pn + bestProof;
+            int cthdn= attacker ? thdn - dn + bestDisproof : Math.min(thdn, second + 1);
+            game.makeMove(list[best], turn);
+            loops[ply][best]= search(ply + 1, !turn, !attacker, cthpn, cthdn);
+            game.unmakeMove();
+        }
+        if (dn == 0 && mark < ply) {
+            int slot= store(key, pn, dn, 0);
+            ttMarks[slot]= mark;
+            ttPlies[slot]= ply;
+            ttLines[slot]= lineHash(Math.max(mark, 0), ply);
+            return mark;
+        }
+        store(key, pn, dn, pn == 0 ? length : 0);
+        return FINAL;
+    }
+
+    /** Writes the moves at ply of the player given by turn into moves and the <br>
+     * keys of the positions they lead to into childKeys, and returns how many <br>
+     * there are: the moves giving check, with the number of replies to each in <br>
+     * replies, if attacker is true, else every legal move. */
+    private int generate(int ply, boolean turn, boolean attacker) {
+        int[] list= moves[ply];
+        int n= game.legalMoves(turn, list, 0, false);
+        int ret= 0;
+        for (int i= 0; i < n; i++) {
+            game.makeMove(list[i], turn);
+            if (!attacker || game.inCheck(!turn)) {
+                list[ret]= list[i];
+                childKeys[ply][ret]= game.positionKey(!turn);
+                if (attacker)
+                    replies[ply][ret]= game.legalMoves(!turn, moves[ply + 1], 0, false);
+                ret++;
+            }
+            game.unmakeMove();
+        }
+        return ret;
+    }
+
+    /** Returns the smallest ply of the line being searched, up to ply, that <br>
+     * holds the position with the given key, or FINAL if none does. */
+    private int onPath(long key, int ply) {
+        for (int i= 0; i <= ply; i++) {
+            if (path[i] == key)
+                return i;
+        }
+        return FINAL;
+    }
+
+    /** Returns the hash of the part of the line being searched from ply from <br>
+     * up to ply to, not included. */
+    private long lineHash(int from, int to) {
+        return pathHashes[to] - pathHashes[from] * powers[to - from];
+    }
+
+    /** Returns the mark of the disproof held in slot of the table for a <br>
+     * position at ply of the line being searched, or FINAL if the disproof <br>
+     * does not hold there. A disproof resting on a repetition holds where the <br>
+     * line ends with the same plies as where it was found, and one resting on <br>
+     * the depth limit only on the very same line. */
+    private int holds(int slot, int ply) {
+        int mark= ttMarks[slot];
+        int from= mark == DEPTH_LIMIT ? 0 : ply - ttPlies[slot] + mark;
+        if (mark == DEPTH_LIMIT ? ply != ttPlies[slot] : from < 0)
+            return FINAL;
+        return lineHash(from, ply) == ttLines[slot] ? (mark == DEPTH_LIMIT ? mark : from) : FINAL;
+    }
+
+    /** Returns the slot of the table holding the position with the given key, <br>
+     * or -1 if it is not in the table. */
+    private int find(long key) {
+        int slot= (int) (key ^ key >>> 32) & ttKeys.length - 1;
+        return ttUsed[slot] && ttKeys[slot] == key ? slot : -1;
+    }
+
+    /** Stores the proof number pn, disproof number dn and mate length of the <br>
+     * position with the given key, replacing the entry of its slot, and returns <br>
+     * the slot. */
+    private int store(long key, int pn, int dn, int length) {
+        int slot= (int) (key ^ key >>> 32) & ttKeys.length - 1;
+        ttKeys[slot]= key;
+        ttUsed[slot]= true;
+        ttProofs[slot]= pn;
+        ttDisproofs[slot]= dn;
+        ttLengths[slot]= (short) Math.min(length, Short.MAX_VALUE);
+        ttMarks[slot]= FINAL;
+        return slot;
+    }
+
+    /** Sets line to the mate proven from the position of the game with the <br>
+     * attacker given by turn to move: the attacker plays its shortest proven <br>
+     * mate and the defender its longest proven defence, as far as the table <br>
+     * still holds them. */
+    private void findLine(boolean turn) {
+        boolean attacker= true;
+        int moved= 0;
+        while (lineLength < MAX_PLY - 2) {
+            int[] list= moves[lineLength];
+            long[] keys= childKeys[lineLength];
+            int n= generate(lineLength, turn, attacker);
+            int best= Move.NONE;
+            int bestLength= attacker ? Integer.MAX_VALUE : -1;
+            for (int i= 0; i < n; i++) {
+                int slot= find(keys[i]);
+                int length= attacker && replies[lineLength][i] == 0 ? 0
+                        : slot >= 0 && ttProofs[slot] == 0 ? ttLengths[slot] : -1;
+                if (length >= 0 && (attacker ? length < bestLength : length > bestLength)) {
+                    best= list[i];
+                    bestLength= length;
+                }
+            }
+            if (best == Move.NONE)
+                break;
+            line[lineLength++]= best;
+            game.makeMove(best, turn);
+            moved++;
+            turn= !turn;
+            attacker= !attacker;
+        }
+        for (; moved > 0; moved--)
+            game.unmakeMove();
+    }
+
+    /** Runs mate mode given args of the form -c path... [-n maxNodes]. <br>
+     * Plays the moves of each test case file named by a path (a file, a <br>
+     * directory or a glob, as in batch mode) as in file mode, then searches <br>
+     * at most maxNodes nodes, ten million by default, for a forced mate by <br>
+     * the player to move. Prints the result, the mating line and the nodes <br>
+     * searched for each file, under a header naming it if there are several, <br>
+     * and a summary at the end. No path, an unusable one or a count of nodes <br>
+     * that is not a number gets the usage line. */
+    static void run(String[] args) throws Exception {
+        long maxNodes= DEFAULT_NODES;
+        boolean usage= false;
+        int paths= 0;
+        List<File> files= new ArrayList<>();
+        for (int i= 1; i < args.length && !usage; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,18}"))
+                maxNodes= Long.parseLong(args[++i]);
+            else if (args[i].equals("-n"))
+                usage= true;
+            else {
+                List<File> named= Batch.expand(args[i]);
+                if (named == null)
+                    usage= true;
+                else
+                    files.addAll(named);
+                paths++;
+            }
+        }
+        if (usage || paths == 0) {
+            System.out.println("Usage: -c path... [-n maxNodes]");
+            return;
+        }
+        Mate solver= new Mate();
+        int[] results= new int[3];
+        long totalNodes= 0;
+        long start= System.nanoTime();
+        for (File f : files) {
+            if (files.size() > 1)
+                System.out.println("==> " + f.getPath() + " <==");
+            Game g= new Game(Utils.readTestCase(f.getPath()));
+            g.replayMoves();
+            if (g.isGameOver()) {
+                System.out.println("The game is over.");
+                System.out.println("");
+                continue;
+            }
+            long fileStart= System.nanoTime();
+            int result= solver.solve(g, maxNodes);
+            results[result]++;
+            totalNodes+= solver.getNodes();
+            String player= g.isLowerTurn() ? "lower" : "UPPER";
+            if (result == MATE)
+                System.out.println("Result: " + player + " mates, " + solver.lineLength
+                        + (solver.lineLength == 1 ? " ply" : " plies") + " along the line found");
+            else
+                System.out.println(result == NO_MATE ? "Result: no mate"
+                        : "Result: unknown, node limit reached");
+            if (result == MATE) {
+                StringBuilder str= new StringBuilder("Line:");
+                for (int m : solver.getLine()) {
+                    str.append(str.length() > 5 ? ", " : " ").append(Move.toString(m));
+                }
+                System.out.println(str);
+            }
+            System.out.println("Nodes: " + solver.getNodes());
+            System.out.println("Time: " + (System.nanoTime() - fileStart) / 1000000 + " ms");
+            System.out.println("");
+        }
+        long nanos= Math.max(1, System.nanoTime() - start);
+        System.out.println("Files: " + files.size());
+        System.out.println("Mates: " + results[MATE]);
+        System.out.println("No mate: " + results[NO_MATE]);
+        System.out.println("Unknown: " + results[UNKNOWN]);
+        System.out.println("Nodes: " + totalNodes);
+        System.out.println("Time: " + nanos / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,390 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** An instance chooses moves in the position of a Game by Monte Carlo tree <br>
+ * search: random games (playouts) are played from the leaves of a tree of <br>
+ * positions grown one node per playout, and the tree is descended by UCT, <br>
+ * which balances the moves that won the most playouts against those tried <br>
+ * least. Several threads search one shared tree. Its statistics are updated <br>
+ * with atomic adds and no locks, and a thread descending through a node counts <br>
+ * a visit there at once, before its playout has a result: the virtual loss <br>
+ * steers the other threads to other moves meanwhile. The tree lives in arrays <br>
+ * allocated once, and each thread plays on its own copy of the game with its <br>
+ * own buffers, so a playout allocates nothing. Playouts follow the rules of <br>
+ * Game: drops from either hand, and a game not over after 400 turns is a tie. */
+public class Mcts {
+    /** The default number of nodes of the tree. */
+    private final static int    DEFAULT_NODES= 1 << 20;
+
+    /** The turn at which a game that is not over is tied, as in Game.move. */
+    private final static int    MAX_TURNS= 400;
+
+    /** The room for the candidate moves of one position. */
+    private final static int    MAX_MOVES= 2048;
+
+    /** The exploration constant of UCT, for results counted between 0 and 1. */
+    private final static double EXPLORATION= 1.4;
+
+    /** The states of a node: not expanded, being expanded and expanded. */
+    private final static int    LEAF= 0, EXPANDING= 1, EXPANDED= 2;
+
+    /** The results of a playout for the player who moved into a node, in half <br>
+     * points: a loss, a tie and a win. */
+    private final static int    LOSS= 0, TIE= 1, WIN= 2;
+
+    /** The game searched. */
+    private Game               game;
+
+    /** The move leading to each node, the index of its first child and its <br>
+     * number of children, the children of a node being consecutive. The last <br>
+     * two are written before the node is published as EXPANDED. */
+    private int[]              moves;
+
+    private int[]              firstChild;
+
+    private int[]              childCount;
+
+    /** The state of each node, LEAF, EXPANDING or EXPANDED. */
+    private AtomicIntegerArray states;
+
+    /** The playouts through each node, including those still running, and <br>
+     * the half points they scored for the player who moved into it. */
+    private AtomicIntegerArray visits;
+
+    private AtomicIntegerArray scores;
+
+    /** The number of nodes allocated. */
+    private AtomicInteger      size;
+
+    /** The playouts finished by the last search, and its length in nanoseconds. */
+    private long               playouts;
+
+    private long               nanos;
+
+    /** Constructor: an Mcts choosing moves in Game g with a tree of the default <br>
+     * number of nodes. */
+    public Mcts(Game g) {
+        this(g, DEFAULT_NODES);
+    }
+
+    /** Constructor: an Mcts choosing moves in Game g with a tree of at most <br>
+     * nodes nodes. */
+    public Mcts(Game g, int nodes) {
+        game= g;
+        moves= new int[nodes];
+        firstChild= new int[nodes];
+        childCount= new int[nodes];
+        states= new AtomicIntegerArray(nodes);
+        visits= new AtomicIntegerArray(nodes);
+        scores= new AtomicIntegerArray(nodes);
+        size= new AtomicInteger();
+    }
+
+    /** An instance is a thread of a search, with its own copy of the game. */
+    private class Worker extends Thread {
+        /** The copy of the game played on, in the position searched between playouts. */
+        private Game             g;
+
+        /** The nodes of the path from the root to the current node. */
+        private int[]            path= new int[MAX_TURNS + 1];
+
+        /** The candidate moves of the position of a playout. */
+        private int[]            buf= new int[MAX_MOVES];
+
+        private SplittableRandom random;
+
+        /** The time to stop at, as given by System.nanoTime. */
+        private long             deadline;
+
+        /** The playouts this thread finished. */
+        private long             done;
+
+        /** Constructor: a thread searching until deadline, drawing its random <br>
+         * choices from seed. */
+        Worker(long deadline, long seed) {
+            g= new Game(game);
+            random= new SplittableRandom(seed);
+            this.deadline= deadline;
+        }
+
+        @Override public void run() {
+            while (System.nanoTime() < deadline) {
+                playout();
+                done++;
+            }
+        }
+
+        /** Descends the tree from the root to a leaf, expands it, plays a random <br>
+         * game from there and adds its result to the nodes of the path. */
+        private void playout() {
+            boolean turn= g.isLowerTurn();
+            int turns= g.getNumTurns();
+            int node= 0;
+            int depth= 0;
+            path[depth++]= 0;
+            visits.incrementAndGet(0);
+            // the result for the player to move in the position reached
+            int result= -1;
+            while (result < 0 && states.get(node) == EXPANDED) {
+                if (childCount[node] == 0) {
+                    result= LOSS;
+                    break;
+                }
+                node= select(node);
+                visits.incrementAndGet(node);
+                path[depth++]= node;
+                g.makeMove(moves[node], turn);
+                turn= !turn;
+                if (++turns >= MAX_TURNS)
+                    result= isMated(turn) ? LOSS : TIE;
+            }
+            if (result < 0) {
+                expand(node, turn);
+                result= simulate(turn, turns);
+            }
+            for (int i= depth - 1; i >= 0; i--) {
+                // the player who moved into path[i] is the opponent of the one
+                // to move there
+                scores.addAndGet(path[i], WIN - result);
+                result= WIN - result;
+            }
+            for (int i= 1; i < depth; i++)
+                g.unmakeMove();
+        }
+
+        /** Returns the child of node with the best UCT value. A child without <br>
+         * visits comes first, starting from a random one so that threads at the <br>
+         * same node spread out. */
+        private int select(int node) {
+            int first= firstChild[node];
+            int n= childCount[node];
+            double logVisits= Math.log(Math.max(1, visits.get(node)));
+            int best= first;
+            double bestValue= -1;
+            int offset= random.nextInt(n);
+            for (int i= 0; i < n; i++) {
+                int child= first + (i + offset) % n;
+                int v= visits.get(child);
+                if (v == 0)
+                    return child;
+                double value= scores.get(child) / (2.0 * v)
+                        + EXPLORATION * Math.sqrt(logVisits / v);
+                if (value > bestValue) {
+                    bestValue= value;
+                    best= child;
+                }
+            }
+            return best;
+        }
+
+        /** Adds the legal moves of the player to move at node, given by turn, as <br>
+         * its children, unless another thread is doing so or the tree is full. */
+        private void expand(int node, boolean turn) {
+            if (!states.compareAndSet(node, LEAF, EXPANDING))
+                return;
+            int n= g.legalMoves(turn, buf, 0, false);
+            int first= size.get() + n > moves.length ? moves.length : size.getAndAdd(n);
+            if (first + n > moves.length) {
+                states.set(node, LEAF);
+                return;
+            }
+            System.arraycopy(buf, 0, moves, first, n);
+            firstChild[node]= first;
+            childCount[node]= n;
+            states.set(node, EXPANDED);
+        }
+
+        /** Plays random moves from the position of g, the player given by turn <br>
+         * to move after turns turns, until the game is over, takes them back and <br>
+         * returns the result for that player. */
+        private int simulate(boolean turn, int turns) {
+            boolean mover= turn;
+            int played= 0;
+            int result= TIE;
+            while (turns < MAX_TURNS) {
+                int m= randomMove(turn);
+                if (m == Move.NONE) {
+                    result= turn == mover ? LOSS : WIN;
+                    break;
+                }
+                g.makeMove(m, turn);
+                played++;
+                turns++;
+                turn= !turn;
+            }
+            if (turns == MAX_TURNS && isMated(turn))
+                result= turn == mover ? LOSS : WIN;
+            for (int i= 0; i < played; i++)
+                g.unmakeMove();
+            return result;
+        }
+
+        /** Returns a random legal move of the player given by turn, or Move.NONE <br>
+         * if there is none. Candidates are tried in random order until one is <br>
+         * legal, which picks each legal move alike without listing them all. <br>
+         * The choice is lightly biased to captures: a quiet move is drawn again <br>
+         * once half of the time. */
+        private int randomMove(boolean turn) {
+            int n= g.candidateMoves(turn, buf, 0, false);
+            int ret= Move.NONE;
+            for (int tries= 0; tries < 2; tries++) {
+                int m= Move.NONE;
+                for (int rest= n; rest > 0; ) {
+                    int i= random.nextInt(rest);
+                    int candidate= buf[i];
+                    buf[i]= buf[--rest];
+                    buf[rest]= candidate;
+                    if (g.isLegal(candidate, turn)) {
+                        m= candidate;
+                        break;
+                    }
+                }
+                if (m == Move.NONE)
+                    return ret;
+                ret= m;
+                if (Move.isDrop(m) || g.getBoard().isOccupied(Move.to(m)) || random.nextBoolean())
+                    return ret;
+            }
+            return ret;
+        }
+
+        /** Returns true if the player given by turn is checkmated: in check and <br>
+         * without a legal move. At the last turn, this is the only way Game.move <br>
+         * does not score the game as a tie; a player without a move who is not <br>
+         * in check is tied there. */
+        private boolean isMated(boolean turn) {
+            return g.inCheck(turn) && !hasMove(turn);
+        }
+
+        /** Returns true if the player given by turn has a legal move. */
+        private boolean hasMove(boolean turn) {
+            int n= g.candidateMoves(turn, buf, 0, false);
+            for (int i= 0; i < n; i++) {
+                if (g.isLegal(buf[i], turn))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /** Searches the position of the game with the given number of threads for <br>
+     * millis milliseconds and returns the move played in the most playouts, or <br>
+     * Move.NONE if the player to move has no legal move. */
+    public int search(long millis, int threads) throws InterruptedException {
+        long start= System.nanoTime();
+        for (int i= 0; i < Math.min(size.get(), moves.length); i++) {
+            states.set(i, LEAF);
+            visits.set(i, 0);
+            scores.set(i, 0);
+        }
+        size.set(1);
+        states.set(0, LEAF);
+        visits.set(0, 0);
+        scores.set(0, 0);
+        // a longer budget than the engine's would overflow the deadline
+        long deadline= start + Math.min(millis, Engine.MAX_MILLIS) * 1000000;
+        Worker[] workers= new Worker[threads];
+        for (int i= 0; i < threads; i++)
+            workers[i]= new Worker(deadline, start + i);
+        workers[0].expand(0, game.isLowerTurn());
+        for (Worker w : workers)
+            w.start();
+        playouts= 0;
+        for (Worker w : workers) {
+            w.join();
+            playouts+= w.done;
+        }
+        nanos= Math.max(1, System.nanoTime() - start);
+        return best();
+    }
+
+    /** Returns the move of the child of the root played in the most playouts, <br>
+     * or Move.NONE if the root has no children. */
+    private int best() {
+        int best= bestChild();
+        return best < 0 ? Move.NONE : moves[best];
+    }
+
+    /** Returns the child of the root played in the most playouts, or -1 if the <br>
+     * root has no children. */
+    private int bestChild() {
+        int best= -1;
+        for (int i= 0; i < childCount[0]; i++) {
+            int child= firstChild[0] + i;
+            if (best < 0 || visits.get(child) > visits.get(best))
+                best= child;
+        }
+        return best;
+    }
+
+    /** Returns the playouts finished per second by the last search. */
+    public long playoutsPerSecond() {
+        return playouts * 1000000000L / nanos;
+    }
+
+    /** Returns a one-line report of the last search: the playouts, their <br>
+     * rate, the nodes of the tree and the share of points the best move won. */
+    public String report() {
+        int best= bestChild();
+        String won= best < 0 ? "" : String.format(", best move won %.1f%% of %d",
+                50.0 * scores.get(best) / Math.max(1, visits.get(best)), visits.get(best));
+        return playouts + " playouts, " + playoutsPerSecond() + " playouts/sec, "
+                + Math.min(size.get(), moves.length) + " nodes, " + nanos / 1000000 + " ms"
+                + won;
+    }
+
+    /** Runs MCTS mode given args of the form <br>
+     * -u [millis] -f fileName [-t threads] [-scale]. <br>
+     * Plays the moves of the file as in file mode, then searches the position <br>
+     * reached for millis milliseconds (1000 by default) on the given number <br>
+     * of threads (one per available processor by default) and prints the best <br>
+     * move and the playouts per second. With -scale, the search is run with 1 <br>
+     * to threads threads in turn, and the speedup and efficiency of each over <br>
+     * one thread are printed as well. A missing file or any other argument <br>
+     * gets the usage line. */
+    static void run(String[] args) throws Exception {
+        long millis= 1000;
+        int threads= Runtime.getRuntime().availableProcessors();
+        String path= null;
+        boolean scale= false;
+        boolean usage= false;
+        for (int i= 1; i < args.length && !usage; i++) {
+            if (args[i].equals("-f") && i + 1 < args.length)
+                path= args[++i];
+            else if (args[i].equals("-t") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,9}"))
+                threads= Math.max(1, Integer.parseInt(args[++i]));
+            else if (args[i].equals("-scale"))
+                scale= true;
+            else if (args[i].matches("\\d{1,18}"))
+                millis= Long.parseLong(args[i]);
+            else
+                usage= true;
+        }
+        if (usage || path == null) {
+            System.out.println("Usage: -u [millis] -f fileName [-t threads] [-scale]");
+            return;
+        }
+        Game g= new Game(Utils.readTestCase(path));
+        System.out.print(g.fileOutput());
+        if (g.isGameOver())
+            return;
+        Mcts mcts= new Mcts(g);
+        System.out.println("");
+        long single= 0;
+        for (int t= scale ? 1 : threads; t <= threads; t++) {
+            int best= mcts.search(millis, t);
+            if (t == 1)
+                single= mcts.playoutsPerSecond();
+            System.out.println("Threads: " + t + ", best move: "
+                    + (best == Move.NONE ? "none" : Move.toString(best)));
+            System.out.println("Search: " + mcts.report());
+            if (scale && single > 0) {
+                double speedup= (double) mcts.playoutsPerSecond() / single;
+                System.out.println(String.format("Speedup: %.2f, efficiency: %.0f%%",
+                        speedup, 100 * speedup / t));
+            }
+        }
+    }
+}
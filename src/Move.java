@@ -0,0 +1,92 @@
+/** A utility class for BoxShogi moves packed into a single int, so that <br>
+ * candidate moves can be generated and stored without building strings. <br>
+ * Bits 0-4 hold the destination square, bits 5-9 the starting square, <br>
+ * bits 10-12 the dropped piece type plus one (0 for a board move) and <br>
+ * bit 13 the promote flag. Squares are indexed as in Board. */
+public class Move {
+    /** Represents a command that is not a well-formed move or drop. */
+    final static int NONE= -1;
+
+    /** Returns the move of a piece from square from to square to, <br>
+     * promoting it if promote is true. */
+    static int move(int from, int to, boolean promote) {
+        return to | from << 5 | (promote ? 1 << 13 : 0);
+    }
+
+    /** Returns the drop of a piece of the given type on square to. */
+    static int drop(int type, int to) {
+        return to | type + 1 << 10;
+    }
+
+    /** Returns the destination square of move m. */
+    static int to(int m) {
+        return m & 31;
+    }
+
+    /** Returns the starting square of move m, unused for drops. */
+    static int from(int m) {
+        return m >>> 5 & 31;
+    }
+
+    /** Returns true if m is a drop. */
+    static boolean isDrop(int m) {
+        return (m & 7 << 10) != 0;
+    }
+
+    /** Returns the type of the piece dropped by m, or -1 if m is not a drop. */
+    static int dropType(int m) {
+        return (m >>> 10 & 7) - 1;
+    }
+
+    /** Returns true if move m asks for promotion. */
+    static boolean isPromote(int m) {
+        return (m & 1 << 13) != 0;
+    }
+
+    /** Returns the square of a position in letter number form (i.e. a5 into 4), <br>
+     * or -1 if pos is not a square of the board. */
+    static int parseSquare(String pos) {
+        if (pos.length() != 2)
+            return -1;
+        int x= pos.charAt(0) - 'a';
+        int y= pos.charAt(1) - '1';
+        if (x < 0 || x >= Board.BOARD_SIZE || y < 0 || y >= Board.BOARD_SIZE)
+            return -1;
+        return Board.square(x, y);
+    }
+
+    /** Returns square sq in letter number form (i.e. 4 into a5). */
+    static String squareName(int sq) {
+        return "" + (char) ('a' + sq / Board.BOARD_SIZE) + (char) ('1' + sq % Board.BOARD_SIZE);
+    }
+
+    /** Returns the packed form of a move or drop command m as given by the <br>
+     * user, or NONE if m is not well formed. Any fourth word of a move <br>
+     * command asks for promotion. */
+    static int parse(String m) {
+        String[] oneMove= m.split(" ");
+        if (oneMove.length < 3 || oneMove.length > 4)
+            return NONE;
+        int to= parseSquare(oneMove[2]);
+        if (to < 0)
+            return NONE;
+        if (oneMove[0].equals("drop")) {
+            int type= oneMove[1].length() == 1 ? Board.TYPES.indexOf(oneMove[1].charAt(0)) : -1;
+            if (type < 0 || oneMove.length == 4)
+                return NONE;
+            return drop(type, to);
+        }
+        int from= parseSquare(oneMove[1]);
+        if (from < 0)
+            return NONE;
+        return move(from, to, oneMove.length == 4);
+    }
+
+    /** Returns move m as a move or drop command (i.e. "move a1 b2" or "drop p c3"). */
+    static String toString(int m) {
+        if (isDrop(m))
+            return "drop " + Board.TYPES.charAt(dropType(m)) + " " + squareName(to(m));
+        return "move " + squareName(from(m)) + " " + squareName(to(m))
+                + (isPromote(m) ? " promote" : "");
+    }
+}
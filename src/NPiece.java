@@ -9,51 +9,30 @@ class NPiece extends Piece {
         super("n", lower, promoted, captured);
     }
 
-    /** Returns whether or not this piece can move from initPos to finalPos on board. */
-    @Override protected boolean canMove(int[] initPos, int[] finalPos, Board board,
-            boolean behind) {
-        if (!Piece.checkBounds(initPos, finalPos) || hitOwnPiece(initPos, finalPos, board))
+    /** Returns whether or not this piece can move from square from to square to on board. */
+    @Override protected boolean canMove(int from, int to, Board board, boolean behind) {
+        if (from == to || hitOwnPiece(to, board))
             return false;
-        int deltaI= Math.abs(initPos[0] - finalPos[0]);
-        int deltaJ= Math.abs(initPos[1] - finalPos[1]);
+        int deltaI= Math.abs(col(from) - col(to));
+        int deltaJ= Math.abs(row(from) - row(to));
         boolean driveCheck= deltaI <= 1 && deltaJ <= 1;
         if (getPromoted()) {
             if (driveCheck)
                 return true;
         }
-        boolean notesCheck= true;
-        if (! (deltaI == 0 && deltaJ != 0 || deltaI != 0 && deltaJ == 0))
-            notesCheck= false;
-        if (deltaI != 0) {
-            if (initPos[0] > finalPos[0]) {
-                for (int i= initPos[0] - 1; i > finalPos[0]; i--) {
-                    if (board.getPiece(i, initPos[1]) != null)
-                        notesCheck= false;
-                }
-            } else {
-                for (int i= initPos[0] + 1; i < finalPos[0]; i++) {
-                    if (board.getPiece(i, initPos[1]) != null)
-                        notesCheck= false;
-                }
-            }
-        } else {
-            if (initPos[1] > finalPos[1]) {
-                for (int i= initPos[1] - 1; i > finalPos[1]; i--) {
-                    if (board.getPiece(initPos[0], i) != null)
-                        notesCheck= false;
-                }
-            } else {
-                for (int i= initPos[1] + 1; i < finalPos[1]; i++) {
-                    if (board.getPiece(initPos[0], i) != null)
-                        notesCheck= false;
-                }
-            }
+        boolean notesCheck= deltaI == 0 && deltaJ != 0 || deltaI != 0 && deltaJ == 0;
+        int step= deltaI != 0 ? Board.BOARD_SIZE : 1;
+        if (to < from)
+            step= -step;
+        for (int sq= from + step; notesCheck && sq != to; sq+= step) {
+            if (board.isOccupied(sq))
+                notesCheck= false;
         }
         if (!behind) {
-            Piece behindPiece= pieceBehind(initPos, board);
+            Piece behindPiece= pieceBehind(from, board);
             if (behindPiece == null)
                 return notesCheck;
-            return behindPiece.canMove(initPos, finalPos, board, true) || notesCheck;
+            return behindPiece.canMove(from, to, board, true) || notesCheck;
         }
         return notesCheck;
     }
@@ -9,34 +9,28 @@ class PPiece extends Piece {
         super("p", lower, promoted, captured);
     }
 
-    /** Returns whether or not this piece can move from initPos to finalPos on board. */
-    @Override protected boolean canMove(int[] initPos, int[] finalPos, Board board,
-            boolean behind) {
-        if (!Piece.checkBounds(initPos, finalPos) || hitOwnPiece(initPos, finalPos, board))
+    /** Returns whether or not this piece can move from square from to square to on board. */
+    @Override protected boolean canMove(int from, int to, Board board, boolean behind) {
+        if (from == to || hitOwnPiece(to, board))
             return false;
-        int deltaI= Math.abs(initPos[0] - finalPos[0]);
-        int deltaJ= Math.abs(initPos[1] - finalPos[1]);
-        Piece curr= board.getPiece(initPos[0], initPos[1]);
+        int deltaI= Math.abs(col(from) - col(to));
+        int deltaJ= Math.abs(row(from) - row(to));
+        boolean lower= board.isLower(from);
+        int forward= lower ? 1 : -1;
         boolean previewCheck= true;
         if (getPromoted()) {
-            if (curr.getLower() && finalPos[1] == initPos[1] - 1
-                    && (finalPos[0] == initPos[0] - 1 || finalPos[0] == initPos[0] + 1))
-                previewCheck= false;
-            if (!curr.getLower() && finalPos[1] == initPos[1] + 1
-                    && (finalPos[0] == initPos[0] - 1 || finalPos[0] == initPos[0] + 1))
+            if (row(to) == row(from) - forward && deltaI == 1)
                 previewCheck= false;
             if (! (deltaI <= 1 && deltaJ <= 1))
                 previewCheck= false;
         }
-        if (! (deltaI == 0 && (finalPos[1] - initPos[1] == 1 && curr.getLower()
-                || initPos[1] - finalPos[1] == 1 && !curr.getLower())))
+        if (! (deltaI == 0 && row(to) - row(from) == forward))
             previewCheck= false;
         if (!behind) {
-            Piece behindPiece= pieceBehind(initPos, board);
-            if (behindPiece == null) {
+            Piece behindPiece= pieceBehind(from, board);
+            if (behindPiece == null)
                 return previewCheck;
-            }
-            return behindPiece.canMove(initPos, finalPos, board, true) || previewCheck;
+            return behindPiece.canMove(from, to, board, true) || previewCheck;
         }
         return previewCheck;
     }
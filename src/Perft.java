@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** An instance counts the sequences of legal moves of a given length from the <br>
+ * position of a Game (perft), to check the move generator against known counts <br>
+ * and measure how fast it enumerates positions. Every sequence of legal moves <br>
+ * and drops is counted, promotions included; the 400-turn tie rule is ignored. */
+public class Perft {
+    /** The room for moves generated at one ply. */
+    private final static int MAX_MOVES= 2048;
+
+    /** The game whose position is counted from. */
+    private Game             game;
+
+    /** The moves generated at each remaining depth. */
+    private int[][]          moves;
+
+    /** Constructor: creates a Perft counting from the position of Game g <br>
+     * at most depth plies deep. */
+    public Perft(Game g, int depth) {
+        game= g;
+        moves= new int[Math.max(1, depth)][MAX_MOVES];
+    }
+
+    /** Returns the number of positions reached from the position of the game <br>
+     * after d plies, with the player given by turn to move, lower if turn is true. */
+    public long count(int d, boolean turn) {
+        if (d == 0)
+            return 1;
+        int[] list= moves[d - 1];
+        int n= game.legalMoves(turn, list, 0, false);
+        if (d == 1)
+            return n;
+        long ret= 0;
+        for (int i= 0; i < n; i++) {
+            game.makeMove(list[i], turn);
+            ret+= count(d - 1, !turn);
+            game.unmakeMove();
+        }
+        return ret;
+    }
+
+    /** Runs perft mode given args of the form -p depth [-t threads] [-f fileName]. <br>
+     * Counts from the standard start position, or from the position reached by the <br>
+     * moves of the file, and prints the count below each root move, the total, <br>
+     * the time taken and the nodes per second. The root moves are shared out <br>
+     * among the given number of threads, one by default. No depth, a count <br>
+     * that is not a number or any other argument gets the usage line. */
+    static void run(String[] args) throws Exception {
+        int threads= 1;
+        String path= null;
+        boolean usage= args.length < 2 || !args[1].matches("\\d{1,9}");
+        for (int i= 2; i < args.length && !usage; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,9}"))
+                threads= Integer.parseInt(args[++i]);
+            else if (args[i].equals("-f") && i + 1 < args.length)
+                path= args[++i];
+            else
+                usage= true;
+        }
+        if (usage) {
+            System.out.println("Usage: -p depth [-t threads] [-f fileName]");
+            return;
+        }
+        final int depth= Integer.parseInt(args[1]);
+        final Game root= path == null ? new Game() : new Game(Utils.readTestCase(path));
+        if (path != null)
+            root.replayMoves();
+        if (root.isGameOver()) {
+            System.out.println("The game is over.");
+            return;
+        }
+        final boolean turn= root.isLowerTurn();
+        long start= System.nanoTime();
+        long total= 1;
+        if (depth > 0) {
+            int[] rootMoves= new int[MAX_MOVES];
+            int n= root.legalMoves(turn, rootMoves, 0, false);
+            ExecutorService pool= Executors.newFixedThreadPool(Math.max(1, threads));
+            List<Future<Long>> counts= new ArrayList<>();
+            for (int i= 0; i < n; i++) {
+                final int m= rootMoves[i];
+                counts.add(pool.submit(() -> {
+                    Game g= new Game(root);
+                    g.makeMove(m, turn);
+                    return new Perft(g, depth - 1).count(depth - 1, !turn);
+                }));
+            }
+            total= 0;
+            for (int i= 0; i < n; i++) {
+                long count= counts.get(i).get();
+                System.out.println(Move.toString(rootMoves[i]) + ": " + count);
+                total+= count;
+            }
+            pool.shutdown();
+        }
+        long nanos= Math.max(1, System.nanoTime() - start);
+        System.out.println("");
+        System.out.println("Depth: " + depth);
+        System.out.println("Nodes: " + total);
+        System.out.println("Time: " + nanos / 1000000 + " ms");
+        System.out.println("Nodes/sec: " + total * 1000000000L / nanos);
+    }
+}
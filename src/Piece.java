@@ -27,8 +27,10 @@ public abstract class Piece {
         setCaptured(captured);
     }
 
-    /** Returns whether or not this piece can move from initPos to finalPos on board. */
-    protected abstract boolean canMove(int[] initPos, int[] finalPos, Board board, boolean behind);
+    /** Returns whether or not this piece can move from square from to square to <br>
+     * on board, squares being indexed as in Board. If behind is false, the moves <br>
+     * this piece borrows from the piece behind it are included. */
+    protected abstract boolean canMove(int from, int to, Board board, boolean behind);
 
     /** Promotes this piece and returns if promotion was successful. */
     protected abstract boolean promote();
@@ -37,33 +39,29 @@ public abstract class Piece {
      * stripped and player ownership changing sides. */
     protected abstract Piece beenCaptured();
 
-    /** Returns true if the initial and final position of <br>
-     * pieces being moved does not reach out of the board boundaries and <br>
-     * if the initial and final positions are different. */
-    protected static boolean checkBounds(int[] initPos, int[] finalPos) {
-        assert initPos[0] >= 0 && initPos[0] <= 4 && initPos[1] >= 0 && initPos[1] <= 4;
-        if (initPos[0] == finalPos[0] && initPos[1] == finalPos[1])
-            return false;
-        return finalPos[0] >= 0 && finalPos[0] <= 4 && finalPos[1] >= 0 && finalPos[1] <= 4;
+    /** Returns the column of square sq (0 for a, 4 for e). */
+    protected static int col(int sq) {
+        return sq / Board.BOARD_SIZE;
     }
 
-    /** Returns true if one of the player's own pieces is collided into. */
-    protected boolean hitOwnPiece(int[] initPos, int[] finalPos, Board b) {
-        Piece p= b.getPiece(finalPos[0], finalPos[1]);
-        return p != null && p.getLower() == lower;
+    /** Returns the row of square sq (0 for 1, 4 for 5). */
+    protected static int row(int sq) {
+        return sq % Board.BOARD_SIZE;
     }
 
-    /** Returns true if there is a piece behind initPos. */
-    protected Piece pieceBehind(int[] initPos, Board b) {
-        int[] finalPos= new int[] {initPos[0], initPos[1] + 1};
-        if (lower) {
-            finalPos= new int[] {initPos[0], initPos[1] - 1};
-        }
-        if (checkBounds(initPos, finalPos)) {
-            Piece potential= b.getPiece(finalPos[0], finalPos[1]);
-            return potential;
-        }
-        return null;
+    /** Returns true if one of the player's own pieces is on square to of board b. */
+    protected boolean hitOwnPiece(int to, Board b) {
+        return b.isOccupied(to) && b.isLower(to) == lower;
+    }
+
+    /** Returns the piece behind square sq on board b, or null if there is none. <br>
+     * The piece returned is shared by all boards and must not be changed. */
+    protected Piece pieceBehind(int sq, Board b) {
+        int behind= lower ? row(sq) - 1 : row(sq) + 1;
+        if (behind < 0 || behind >= Board.BOARD_SIZE)
+            return null;
+        int code= b.pieceCode(Board.square(col(sq), behind));
+        return code < 0 ? null : Board.sharedPiece(code);
     }
 
     /** Returns the type of this piece. */
@@ -0,0 +1,155 @@
+/** A utility class for the compact one-line notation of BoxShogi positions, <br>
+ * in the style of SFEN. A position is written as four fields separated by <br>
+ * single spaces: <br>
+ * 1. the board, row 5 first and row 1 last separated by '/', each row from <br>
+ * column a to e, with a piece letter per piece (lowercase for lower, uppercase <br>
+ * for UPPER, '+' before a promoted piece) and a digit per run of empty squares; <br>
+ * 2. the player to move, 'l' for lower or 'u' for UPPER; <br>
+ * 3. the pieces in hand in capture order, the UPPER hand in uppercase and the <br>
+ * lower hand in lowercase, or '-' if both hands are empty; <br>
+ * 4. the number of turns played. <br>
+ * The start position is "NGRSD/4P/5/p4/dsrgn l - 0". */
+public class Position {
+    /** The position of the start of interactive mode. */
+    final static String START= "NGRSD/4P/5/p4/dsrgn l - 0";
+
+    /** Returns the position of Game g in compact notation. */
+    static String toString(Game g) {
+        Board b= g.getBoard();
+        StringBuilder str= new StringBuilder(48);
+        for (int row= Board.BOARD_SIZE - 1; row >= 0; row--) {
+            int empty= 0;
+            for (int col= 0; col < Board.BOARD_SIZE; col++) {
+                int sq= Board.square(col, row);
+                if (!b.isOccupied(sq)) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0)
+                    str.append((char) ('0' + empty));
+                empty= 0;
+                if (b.isPromoted(sq))
+                    str.append('+');
+                str.append(letter(b.typeAt(sq), b.isLower(sq)));
+            }
+            if (empty > 0)
+                str.append((char) ('0' + empty));
+            if (row > 0)
+                str.append('/');
+        }
+        str.append(g.isLowerTurn() ? " l " : " u ");
+        int[] upperHand= g.hand(false);
+        int[] lowerHand= g.hand(true);
+        if (upperHand.length + lowerHand.length == 0)
+            str.append('-');
+        for (int type : upperHand) {
+            str.append(letter(type, false));
+        }
+        for (int type : lowerHand) {
+            str.append(letter(type, true));
+        }
+        str.append(' ').append(g.getNumTurns());
+        return str.toString();
+    }
+
+    /** Returns the game in the position pos given in compact notation. <br>
+     * Throws an IllegalArgumentException if pos is not well formed, or if it <br>
+     * does not have one drive of each player on the board and none in hand. */
+    static Game parse(String pos) {
+        Board b= new Board(true);
+        int n= pos.length();
+        int i= 0;
+        int row= Board.BOARD_SIZE - 1;
+        int col= 0;
+        int lowerDrives= 0;
+        int upperDrives= 0;
+        for (; i < n && pos.charAt(i) != ' '; i++) {
+            char c= pos.charAt(i);
+            if (c == '/') {
+                if (col != Board.BOARD_SIZE || row == 0)
+                    throw invalid(pos);
+                row--;
+                col= 0;
+            } else if (c >= '1' && c <= '5') {
+                col+= c - '0';
+            } else {
+                boolean pro= c == '+';
+                if (pro && ++i < n)
+                    c= pos.charAt(i);
+                int type= type(c);
+                if (type < 0 || col >= Board.BOARD_SIZE
+                        || pro && (type == Board.DRIVE || type == Board.SHIELD))
+                    throw invalid(pos);
+                b.setPieceCode(Board.square(col, row), Board.code(type, c >= 'a', pro));
+                if (type == Board.DRIVE && c >= 'a')
+                    lowerDrives++;
+                else if (type == Board.DRIVE)
+                    upperDrives++;
+                col++;
+            }
+            if (col > Board.BOARD_SIZE)
+                throw invalid(pos);
+        }
+        if (row != 0 || col != Board.BOARD_SIZE || i + 2 >= n || pos.charAt(i + 2) != ' '
+                || lowerDrives != 1 || upperDrives != 1)
+            throw invalid(pos);
+        char side= pos.charAt(i + 1);
+        if (side != 'l' && side != 'u')
+            throw invalid(pos);
+        int start= i + 3;
+        int end= pos.indexOf(' ', start);
+        if (end < 0 || end == start)
+            throw invalid(pos);
+        int upper= 0;
+        int lower= 0;
+        boolean none= end == start + 1 && pos.charAt(start) == '-';
+        for (int j= start; j < end && !none; j++) {
+            char c= pos.charAt(j);
+            if (type(c) < 0 || type(c) == Board.DRIVE)
+                throw invalid(pos);
+            if (c >= 'a')
+                lower++;
+            else
+                upper++;
+        }
+        int[] upperHand= new int[upper];
+        int[] lowerHand= new int[lower];
+        upper= 0;
+        lower= 0;
+        for (int j= start; j < end && !none; j++) {
+            char c= pos.charAt(j);
+            if (c >= 'a')
+                lowerHand[lower++]= type(c);
+            else
+                upperHand[upper++]= type(c);
+        }
+        int turns= 0;
+        if (end + 1 >= n)
+            throw invalid(pos);
+        for (int j= end + 1; j < n; j++) {
+            char c= pos.charAt(j);
+            if (c < '0' || c > '9' || turns > 100000)
+                throw invalid(pos);
+            turns= turns * 10 + c - '0';
+        }
+        return new Game(b, upperHand, lowerHand, side == 'l', turns);
+    }
+
+    /** Returns the letter of a piece of the given type belonging to the <br>
+     * player, lowercase if lower is true, else uppercase. */
+    private static char letter(int type, boolean lower) {
+        char c= Board.TYPES.charAt(type);
+        return lower ? c : (char) (c - 'a' + 'A');
+    }
+
+    /** Returns the type of the piece with letter c in either case, or -1 if c <br>
+     * is not a piece letter. */
+    private static int type(char c) {
+        return Board.TYPES.indexOf(c >= 'a' ? c : c - 'A' + 'a');
+    }
+
+    /** Returns the exception thrown for the ill-formed position pos. */
+    private static IllegalArgumentException invalid(String pos) {
+        return new IllegalArgumentException("Invalid position: \"" + pos + "\"");
+    }
+}
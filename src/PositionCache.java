@@ -0,0 +1,95 @@
+/** An instance is a bounded cache of the check status of a position and, when <br>
+ * in check, whether it can be got out of and the moves that do so, keyed by <br>
+ * Zobrist position key. The moves are listed only once they are asked for. The <br>
+ * cache is two-way set associative: each key maps to a bucket of two entries, <br>
+ * and storing a new key evicts the less recently used entry of its bucket. */
+public class PositionCache {
+    /** The position key held by each entry. */
+    private long[]    keys;
+
+    /** Whether each entry holds a position at all, since 0 is a valid key. */
+    private boolean[] used;
+
+    /** The check status of the side to move in each entry. */
+    private boolean[] inCheck;
+
+    /** Whether the side to move of each entry in check has an evasion. */
+    private boolean[] escapable;
+
+    /** The packed evasions of each entry in check, null if not in check or <br>
+     * not listed yet. */
+    private int[][]   evasions;
+
+    /** For each bucket, the index (0 or 1) of its most recently used entry. */
+    private byte[]    recent;
+
+    /** Constructor: creates an empty cache with room for at least size <br>
+     * positions, rounded up to a power of two. */
+    public PositionCache(int size) {
+        int buckets= Integer.highestOneBit(Math.max(2, size) - 1);
+        keys= new long[buckets * 2];
+        used= new boolean[buckets * 2];
+        inCheck= new boolean[buckets * 2];
+        escapable= new boolean[buckets * 2];
+        evasions= new int[buckets * 2][];
+        recent= new byte[buckets];
+    }
+
+    /** Returns the bucket of the given key. */
+    private int bucket(long key) {
+        return (int) (key ^ key >>> 32) & recent.length - 1;
+    }
+
+    /** Returns the entry holding key, or -1 if key is not cached. */
+    int find(long key) {
+        int bucket= bucket(key);
+        for (int i= 0; i < 2; i++) {
+            int slot= bucket * 2 + i;
+            if (used[slot] && keys[slot] == key) {
+                recent[bucket]= (byte) i;
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /** Stores the check status check of the position with the given key, and <br>
+     * whether it has an evasion if escape is true, evicting the less recently <br>
+     * used entry of its bucket, and returns the entry it was stored in. */
+    int store(long key, boolean check, boolean escape) {
+        int bucket= bucket(key);
+        int i= 1 - recent[bucket];
+        if (used[bucket * 2] && keys[bucket * 2] == key)
+            i= 0;
+        else if (used[bucket * 2 + 1] && keys[bucket * 2 + 1] == key)
+            i= 1;
+        int slot= bucket * 2 + i;
+        keys[slot]= key;
+        used[slot]= true;
+        inCheck[slot]= check;
+        escapable[slot]= escape;
+        evasions[slot]= null;
+        recent[bucket]= (byte) i;
+        return slot;
+    }
+
+    /** Returns the check status held by entry slot. */
+    boolean inCheck(int slot) {
+        return inCheck[slot];
+    }
+
+    /** Returns true if the side to move of entry slot, in check, has an evasion. */
+    boolean escapable(int slot) {
+        return escapable[slot];
+    }
+
+    /** Returns the evasions held by entry slot, null if they are not listed. */
+    int[] evasions(int slot) {
+        return evasions[slot];
+    }
+
+    /** Stores the list of evasions moves of entry slot. */
+    void setEvasions(int slot, int[] moves) {
+        evasions[slot]= moves;
+    }
+}
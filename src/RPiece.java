@@ -9,44 +9,28 @@ class RPiece extends Piece {
         super("r", lower, promoted, captured);
     }
 
-    /** Returns whether or not this piece can move from initPos to finalPos on board. */
-    @Override protected boolean canMove(int[] initPos, int[] finalPos, Board board,
-            boolean behind) {
-        if (!Piece.checkBounds(initPos, finalPos) || hitOwnPiece(initPos, finalPos, board))
+    /** Returns whether or not this piece can move from square from to square to on board. */
+    @Override protected boolean canMove(int from, int to, Board board, boolean behind) {
+        if (from == to || hitOwnPiece(to, board))
             return false;
-        int deltaI= Math.abs(initPos[0] - finalPos[0]);
-        int deltaJ= Math.abs(initPos[1] - finalPos[1]);
+        int deltaI= Math.abs(col(from) - col(to));
+        int deltaJ= Math.abs(row(from) - row(to));
         boolean relayCheck= true;
         if (deltaI > 1 || deltaJ > 1)
             relayCheck= false;
-        Piece curr= board.getPiece(initPos[0], initPos[1]);
+        boolean lower= board.isLower(from);
+        int forward= lower ? 1 : -1;
         if (getPromoted()) {
-            if (curr.getLower() && finalPos[1] == initPos[1] - 1
-                    && (finalPos[0] == initPos[0] - 1 || finalPos[0] == initPos[0] + 1))
-                relayCheck= false;
-            if (!curr.getLower() && finalPos[1] == initPos[1] + 1
-                    && (finalPos[0] == initPos[0] - 1 || finalPos[0] == initPos[0] + 1))
-                relayCheck= false;
-            if (! (deltaI <= 1 && deltaJ <= 1))
-                relayCheck= false;
-        }
-
-        if (curr.getLower()) {
-            if ( (finalPos[0] == initPos[0] + 1 || finalPos[0] == initPos[0] - 1)
-                    && finalPos[1] == initPos[1]
-                    || finalPos[0] == initPos[0] && finalPos[1] == initPos[1] - 1)
-                relayCheck= false;
-        } else {
-            if ( (finalPos[0] == initPos[0] + 1 || finalPos[0] == initPos[0] - 1)
-                    && finalPos[1] == initPos[1]
-                    || finalPos[0] == initPos[0] && finalPos[1] == initPos[1] + 1)
+            if (row(to) == row(from) - forward && deltaI == 1)
                 relayCheck= false;
         }
+        if (deltaI == 1 && deltaJ == 0 || deltaI == 0 && row(to) == row(from) - forward)
+            relayCheck= false;
         if (!behind) {
-            Piece behindPiece= pieceBehind(initPos, board);
+            Piece behindPiece= pieceBehind(from, board);
             if (behindPiece == null)
                 return relayCheck;
-            return behindPiece.canMove(initPos, finalPos, board, true) || relayCheck;
+            return behindPiece.canMove(from, to, board, true) || relayCheck;
         }
         return relayCheck;
     }
@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+
+/** A utility class for server mode, which hosts many games of interactive <br>
+ * mode at once on a local socket. Each connection plays its own Game: the <br>
+ * server sends what interactive mode prints, reads one command per line and <br>
+ * answers each with what interactive mode prints after it, and closes the <br>
+ * connection when the game is over. All connections are multiplexed by a <br>
+ * single selector thread with non-blocking channels, so an idle game costs <br>
+ * no thread and thousands of games can be played at once. */
+public class Server {
+    /** The TCP port listened on when no address is given. */
+    private final static int    DEFAULT_PORT= 7070;
+
+    /** The size of the buffer each connection is read into. */
+    private final static int    BUFFER_SIZE= 1024;
+
+    /** The longest command accepted; a longer line closes the connection. */
+    private final static int    MAX_LINE= 256;
+
+    /** An instance is a game being played over one connection. */
+    private static class Session {
+        /** The game played. */
+        private Game          game= new Game();
+
+        /** The bytes read and not yet handled. */
+        private ByteBuffer    in= ByteBuffer.allocate(BUFFER_SIZE);
+
+        /** The command line being read. */
+        private StringBuilder line= new StringBuilder();
+
+        /** The output not yet written, or null if it has all been written. */
+        private ByteBuffer    out;
+    }
+
+    /** Runs server mode given args of the form -s [port | socketPath]. <br>
+     * Listens on the given TCP port of the loopback address, or on the <br>
+     * Unix-domain socket at socketPath if it is not a number, and serves <br>
+     * games until the process is stopped. The default is TCP port 7070. A <br>
+     * socketPath holding anything but a socket is refused. */
+    static void run(String[] args) throws IOException {
+        String address= args.length > 1 ? args[1] : Integer.toString(DEFAULT_PORT);
+        ServerSocketChannel server= bind(address);
+        if (server == null)
+            return;
+        server.configureBlocking(false);
+        Selector selector= Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        System.out.println("Listening on " + address);
+        while (true) {
+            selector.select();
+            Iterator<SelectionKey> keys= selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key= keys.next();
+                keys.remove();
+                try {
+                    if (key.isAcceptable()) {
+                        accept(server, selector);
+                    } else {
+                        if (key.isReadable())
+                            read(key);
+                        if (key.isValid() && key.isWritable()) {
+                            flush(key);
+                            if (key.isValid() && ((Session) key.attachment()).out == null)
+                                handle(key);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // only the game of key ends; a failed accept ends none
+                    if (key.channel() != server)
+                        close(key);
+                }
+            }
+        }
+    }
+
+    /** Returns a channel listening on address: the TCP port of the loopback <br>
+     * address it names if it is a number, else the Unix-domain socket at the <br>
+     * path it names, which is removed when the process exits. A socket left at <br>
+     * that path by an earlier run is replaced, but anything else there is kept: <br>
+     * then a message is printed and null returned. */
+    static ServerSocketChannel bind(String address) throws IOException {
+        ServerSocketChannel server;
+        if (address.chars().allMatch(Character::isDigit)) {
+            server= ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(address)));
+            return server;
+        }
+        Path path= Path.of(address);
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!Files.readAttributes(path, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS).isOther()) {
+                System.out.println("Not a socket, so not replaced: " + address);
+                return null;
+            }
+            Files.delete(path);
+        }
+        server= ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // the socket file is left for the next run to replace
+            }
+        }));
+        return server;
+    }
+
+    /** Accepts a connection on server, if any, registers it with selector <br>
+     * and starts its game. */
+    private static void accept(ServerSocketChannel server, Selector selector)
+            throws IOException {
+        SocketChannel channel= server.accept();
+        if (channel == null)
+            return;
+        try {
+            channel.configureBlocking(false);
+            Session s= new Session();
+            SelectionKey key= channel.register(selector, SelectionKey.OP_READ, s);
+            send(key, s.game.startOutput());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Reads what is available on the connection of key and handles the <br>
+     * commands read. */
+    private static void read(SelectionKey key) throws IOException {
+        Session s= (Session) key.attachment();
+        if ( ((SocketChannel) key.channel()).read(s.in) < 0) {
+            close(key);
+            return;
+        }
+        handle(key);
+    }
+
+    /** Plays each complete line read on the connection of key as a command, <br>
+     * sending back the output of each, until one of them cannot be written <br>
+     * at once. The lines after it are kept until its output is written, and <br>
+     * the connection is not read meanwhile, so a client that sends commands <br>
+     * without reading the answers cannot make the server queue more. */
+    private static void handle(SelectionKey key) throws IOException {
+        Session s= (Session) key.attachment();
+        s.in.flip();
+        while (s.in.hasRemaining() && key.isValid() && s.out == null) {
+            char c= (char) (s.in.get() & 0xff);
+            if (c != '\n') {
+                s.line.append(c);
+                if (s.line.length() > MAX_LINE)
+                    close(key);
+                continue;
+            }
+            String command= s.line.toString().trim();
+            s.line.setLength(0);
+            if (!s.game.isGameOver())
+                send(key, s.game.play(command));
+        }
+        s.in.compact();
+    }
+
+    /** Queues text to be written to the connection of key, which has no <br>
+     * output queued, and writes as much of it as the connection takes now. */
+    private static void send(SelectionKey key, String text) throws IOException {
+        Session s= (Session) key.attachment();
+        s.out= ByteBuffer.wrap(text.getBytes());
+        flush(key);
+    }
+
+    /** Writes as much of the output queued for the connection of key as it <br>
+     * takes now, waiting to be writable again, without reading, if some is <br>
+     * left, and reading again once it is all written. Closes the connection <br>
+     * once the game is over and all of its output is written. */
+    private static void flush(SelectionKey key) throws IOException {
+        Session s= (Session) key.attachment();
+        if (s.out != null) {
+            ((SocketChannel) key.channel()).write(s.out);
+            if (s.out.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            s.out= null;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (s.game.isGameOver())
+            close(key);
+    }
+
+    /** Closes the connection of key, ending its game. */
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // the connection is gone either way
+        }
+    }
+}
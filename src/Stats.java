@@ -0,0 +1,223 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/** A utility class counting the calls of the steps of the move pipeline and <br>
+ * recording their latencies in histograms, with an estimate of the bytes <br>
+ * allocated per move. Recording is switched on by the -stats flag, which sets <br>
+ * the system property boxshogi.stats before this class is loaded; ENABLED is <br>
+ * then a constant, so when it is false the JIT removes every recording call <br>
+ * and the cost is nil. The figures are published over JMX as BoxShogi:type=Stats <br>
+ * and printed to standard error when the program exits. */
+public class Stats {
+    /** True if the figures are recorded. */
+    final static boolean ENABLED= Boolean.getBoolean("boxshogi.stats");
+
+    /** The steps recorded: Game.move, Game.availableMoves, Game.testMove, <br>
+     * Game.testDrop, Game.inCheck, Board.canMove, Board.attacks computing the <br>
+     * moves of a piece, and the moves it borrows from a piece behind it. Only <br>
+     * the first four are timed, the others being too short to time without <br>
+     * slowing them down many times over. */
+    final static int             MOVE= 0, AVAILABLE_MOVES= 1, TEST_MOVE= 2, TEST_DROP= 3,
+            IN_CHECK= 4, CAN_MOVE= 5, ATTACKS= 6, BORROWED= 7;
+
+    private final static String[] NAMES= {"move", "availableMoves", "testMove", "testDrop",
+            "inCheck", "Board.canMove", "Board.attacks", "borrowed moves"};
+
+    /** Each power of two of nanoseconds is split into this many buckets, so <br>
+     * a percentile is reported within an eighth of its value. */
+    private final static int     SUB_BUCKETS= 8;
+
+    /** The number of buckets of a histogram, enough for any long. */
+    private final static int     BUCKETS= 64 * SUB_BUCKETS;
+
+    /** The calls counted for each step. */
+    private static LongAdder[]     counts;
+
+    /** The latency histograms of all steps, BUCKETS entries for each. */
+    private static AtomicLongArray histograms;
+
+    /** The longest latency of each step, in nanoseconds. */
+    private static AtomicLongArray max;
+
+    /** The bytes allocated by the moves timed, as measured per thread. */
+    private static LongAdder       moveBytes;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    // the figures and the management classes are only loaded when recording,
+    // since this class is loaded by every run
+    static {
+        if (ENABLED) {
+            counts= new LongAdder[NAMES.length];
+            for (int i= 0; i < NAMES.length; i++)
+                counts[i]= new LongAdder();
+            histograms= new AtomicLongArray(NAMES.length * BUCKETS);
+            max= new AtomicLongArray(NAMES.length);
+            moveBytes= new LongAdder();
+            threads= (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        }
+    }
+
+    /** The management interface of the figures, as published over JMX. */
+    public interface StatsMXBean {
+        /** Returns the number of calls of each step. */
+        Map<String, Long> getCallCounts();
+
+        /** Returns the median, 99th percentile and longest latency of each <br>
+         * timed step, in nanoseconds. */
+        Map<String, Long> getP50Nanos();
+
+        Map<String, Long> getP99Nanos();
+
+        Map<String, Long> getMaxNanos();
+
+        /** Returns the average number of bytes allocated by a move. */
+        long getBytesPerMove();
+
+        /** Clears all the figures. */
+        void reset();
+    }
+
+    /** The published figures, read from the static fields. */
+    private static class Bean implements StatsMXBean {
+        @Override public Map<String, Long> getCallCounts() {
+            Map<String, Long> ret= new LinkedHashMap<>();
+            for (int i= 0; i < NAMES.length; i++)
+                ret.put(NAMES[i], counts[i].sum());
+            return ret;
+        }
+
+        @Override public Map<String, Long> getP50Nanos() {
+            return percentiles(0.50);
+        }
+
+        @Override public Map<String, Long> getP99Nanos() {
+            return percentiles(0.99);
+        }
+
+        @Override public Map<String, Long> getMaxNanos() {
+            Map<String, Long> ret= new LinkedHashMap<>();
+            for (int i= MOVE; i <= TEST_DROP; i++)
+                ret.put(NAMES[i], max.get(i));
+            return ret;
+        }
+
+        @Override public long getBytesPerMove() {
+            long moves= counts[MOVE].sum();
+            return moves == 0 ? 0 : moveBytes.sum() / moves;
+        }
+
+        @Override public void reset() {
+            for (int i= 0; i < NAMES.length; i++) {
+                counts[i].reset();
+                max.set(i, 0);
+            }
+            for (int i= 0; i < histograms.length(); i++)
+                histograms.set(i, 0);
+            moveBytes.reset();
+        }
+    }
+
+    /** Constructor: prevents instantiation. */
+    private Stats() {
+    }
+
+    /** Counts one call of step. */
+    static void count(int step) {
+        counts[step].increment();
+    }
+
+    /** Counts one call of step, started at time start given by System.nanoTime, <br>
+     * and records its latency. */
+    static void record(int step, long start) {
+        long nanos= System.nanoTime() - start;
+        counts[step].increment();
+        histograms.incrementAndGet(step * BUCKETS + bucket(nanos));
+        long longest= max.get(step);
+        while (nanos > longest && !max.compareAndSet(step, longest, nanos))
+            longest= max.get(step);
+    }
+
+    /** Returns the number of bytes allocated by the current thread so far. */
+    static long allocated() {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /** Adds the bytes allocated by the current thread since it had allocated <br>
+     * before bytes to the bytes allocated by moves. */
+    static void recordMoveBytes(long before) {
+        moveBytes.add(threads.getCurrentThreadAllocatedBytes() - before);
+    }
+
+    /** Returns the bucket of a latency of nanos nanoseconds: the power of two <br>
+     * below it and the next three bits. */
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) Math.max(0, nanos);
+        int log= 63 - Long.numberOfLeadingZeros(nanos);
+        return (log - 2) * SUB_BUCKETS + (int) (nanos >>> log - 3 & SUB_BUCKETS - 1);
+    }
+
+    /** Returns the largest latency in the given bucket, in nanoseconds. */
+    private static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int log= bucket / SUB_BUCKETS + 2;
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS + 1L << log - 3) - 1;
+    }
+
+    /** Returns the latency below which the fraction q of the calls of each <br>
+     * timed step fall, in nanoseconds. */
+    private static Map<String, Long> percentiles(double q) {
+        Map<String, Long> ret= new LinkedHashMap<>();
+        for (int i= MOVE; i <= TEST_DROP; i++) {
+            long total= 0;
+            for (int k= 0; k < BUCKETS; k++)
+                total+= histograms.get(i * BUCKETS + k);
+            long rank= (long) Math.ceil(q * total);
+            long seen= 0;
+            long value= 0;
+            for (int k= 0; k < BUCKETS && total > 0; k++) {
+                seen+= histograms.get(i * BUCKETS + k);
+                if (seen >= rank) {
+                    value= Math.min(bucketLimit(k), max.get(i));
+                    break;
+                }
+            }
+            ret.put(NAMES[i], value);
+        }
+        return ret;
+    }
+
+    /** Publishes the figures over JMX and has them printed to standard error <br>
+     * when the program exits. Called by Game.main for the -stats flag. */
+    static void start() throws Exception {
+        Bean bean= new Bean();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(bean,
+                new ObjectName("BoxShogi:type=Stats"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(summary(bean))));
+    }
+
+    /** Returns a table of the figures of bean, one line per step. */
+    private static String summary(Bean bean) {
+        Map<String, Long> p50= bean.getP50Nanos();
+        Map<String, Long> p99= bean.getP99Nanos();
+        Map<String, Long> longest= bean.getMaxNanos();
+        StringBuilder ret= new StringBuilder(String.format("%-16s %12s %10s %10s %10s%n",
+                "step", "calls", "p50 ns", "p99 ns", "max ns"));
+        for (Map.Entry<String, Long> e : bean.getCallCounts().entrySet()) {
+            String name= e.getKey();
+            if (p50.containsKey(name))
+                ret.append(String.format("%-16s %12d %10d %10d %10d%n", name, e.getValue(),
+                        p50.get(name), p99.get(name), longest.get(name)));
+            else
+                ret.append(String.format("%-16s %12d%n", name, e.getValue()));
+        }
+        ret.append(String.format("Bytes allocated per move: %d%n", bean.getBytesPerMove()));
+        return ret.toString();
+    }
+}
@@ -0,0 +1,607 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** An instance is an endgame tablebase read from a binary file mapped into <br>
+ * memory. A tablebase solves every position of one material: both drives and <br>
+ * the pieces of the types named by the material (i.e. "gp" for a governance <br>
+ * and a preview), each on the board or in hand, owned by either player. A <br>
+ * capture only moves a piece to a hand, so every move from such a position <br>
+ * leads to a position of the same material, and the table is complete. <br>
+ * The file holds a 16-byte header (the magic number and the material) and one <br>
+ * byte per position, indexed by the side to move, the squares of the drives <br>
+ * and the state of each other piece. The byte is 0 for a draw, 255 for a <br>
+ * position that cannot arise or for an index other than the one index gives <br>
+ * its position (pieces of one type swapped), and else one more than the <br>
+ * number of plies to mate with best play: the side to move wins if that number <br>
+ * is odd and loses if it is even. A player with no legal move, in check or <br>
+ * not, loses, and the 400-turn tie rule is ignored. Tables are built by <br>
+ * retrograde analysis. */
+public class Tablebase {
+    /** The first eight bytes of a tablebase file, "BOXTB001". */
+    private final static long   MAGIC= 0x424f585442303031L;
+
+    /** The length of the header in bytes, and the longest material. */
+    private final static int    HEADER= 16;
+
+    private final static int    MAX_PIECES= 8;
+
+    /** Entries of positions that are drawn and that cannot arise, and the <br>
+     * largest entry of a position won or lost. */
+    private final static int    DRAWN= 0, INVALID= 255, MAX_ENTRY= INVALID - 1;
+
+    /** Results of probe for a drawn position and a position not in the table. */
+    final static int            DRAW= -1, UNKNOWN= -2;
+
+    /** The number of positions a thread solves at a time. */
+    private final static int    CHUNK= 1 << 14;
+
+    /** The room for the legal moves of one position. */
+    private final static int    MAX_MOVES= 2048;
+
+    /** The types of the pieces other than the drives, in increasing order. */
+    private int[]            types;
+
+    /** The number of states of each piece: for each owner, each square, <br>
+     * promoted or not if it can promote, and the hand. */
+    private int[]            states;
+
+    /** The number of positions of the table. */
+    private long             size;
+
+    /** The mapped table file. */
+    private MappedByteBuffer entries;
+
+    /** Constructor: opens the tablebase in the file at path. Throws an <br>
+     * IOException if the file cannot be read or is not a tablebase. */
+    public Tablebase(String path) throws IOException {
+        try (FileChannel channel= FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long length= channel.size();
+            if (length < HEADER || length > Integer.MAX_VALUE)
+                throw new IOException("Not a tablebase: " + path);
+            entries= channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        if (entries.getLong(0) != MAGIC)
+            throw new IOException("Not a tablebase: " + path);
+        byte[] material= new byte[MAX_PIECES];
+        entries.get(8, material);
+        setMaterial(new String(material).trim());
+        if (entries.capacity() != HEADER + size)
+            throw new IOException("Not a tablebase: " + path);
+    }
+
+    /** Constructor: an empty tablebase, to be built. */
+    private Tablebase() {
+    }
+
+    /** Sets the types, states and size of the table of the given material, <br>
+     * whose letters may come in any order. Throws an IllegalArgumentException <br>
+     * if it is not a material. */
+    private void setMaterial(String material) {
+        if (material.length() > MAX_PIECES)
+            throw new IllegalArgumentException("Invalid material: " + material);
+        char[] letters= material.toCharArray();
+        Arrays.sort(letters);
+        types= new int[letters.length];
+        states= new int[letters.length];
+        size= 2 * Board.NUM_SQUARES * Board.NUM_SQUARES;
+        for (int i= 0; i < types.length; i++) {
+            types[i]= Board.TYPES.indexOf(letters[i]);
+            if (types[i] <= Board.DRIVE)
+                throw new IllegalArgumentException("Invalid material: " + material);
+            states[i]= 2 * (Board.NUM_SQUARES * (canPromote(types[i]) ? 2 : 1) + 1);
+            size*= states[i];
+            if (size > Integer.MAX_VALUE - HEADER)
+                throw new IllegalArgumentException("Material too large: " + material);
+        }
+    }
+
+    /** Returns true if a piece of the given type can be promoted. */
+    private static boolean canPromote(int type) {
+        return type != Board.DRIVE && type != Board.SHIELD;
+    }
+
+    /** Returns the material of the table. */
+    public String material() {
+        StringBuilder str= new StringBuilder();
+        for (int type : types) {
+            str.append(Board.TYPES.charAt(type));
+        }
+        return str.toString();
+    }
+
+    /** Returns the number of positions of the table. */
+    public long size() {
+        return size;
+    }
+
+    /** Returns the index of the position of Game g with the player to move <br>
+     * given by turn, lower if turn is true, or -1 if its material is not the <br>
+     * material of the table. Pieces of the same type fill the states of the <br>
+     * type in the order of their squares, then lower's hand, then UPPER's. */
+    long index(Game g, boolean turn) {
+        Board b= g.getBoard();
+        if (Integer.bitCount(b.pieces(true, Board.DRIVE)) != 1
+                || Integer.bitCount(b.pieces(false, Board.DRIVE)) != 1)
+            return -1;
+        int[] pieceStates= new int[types.length];
+        int[] filled= new int[Board.NUM_TYPES];
+        int occupied= (b.occupied(true) | b.occupied(false))
+                & ~ (b.pieces(true, Board.DRIVE) | b.pieces(false, Board.DRIVE));
+        for (int rest= occupied; rest != 0; rest&= rest - 1) {
+            int sq= Integer.numberOfTrailingZeros(rest);
+            int type= b.typeAt(sq);
+            int slot= slot(type, filled[type]++);
+            if (slot < 0)
+                return -1;
+            int loc= canPromote(type) ? sq * 2 + (b.isPromoted(sq) ? 1 : 0) : sq;
+            pieceStates[slot]= (b.isLower(sq) ? 0 : states[slot] / 2) + loc;
+        }
+        for (int side= Board.LOWER; side <= Board.UPPER; side++) {
+            for (int type= 1; type < Board.NUM_TYPES; type++) {
+                for (int i= g.handCount(side == Board.LOWER, type); i > 0; i--) {
+                    int slot= slot(type, filled[type]++);
+                    if (slot < 0)
+                        return -1;
+                    pieceStates[slot]= states[slot] / 2 * (side + 1) - 1;
+                }
+            }
+        }
+        for (int type= 1; type < Board.NUM_TYPES; type++) {
+            if (slot(type, filled[type]) >= 0)
+                return -1;
+        }
+        long index= (turn ? 0 : 1) * Board.NUM_SQUARES + b.driveSquare(true);
+        index= index * Board.NUM_SQUARES + b.driveSquare(false);
+        for (int i= 0; i < types.length; i++)
+            index= index * states[i] + pieceStates[i];
+        return index;
+    }
+
+    /** Returns the index in types of the (n+1)th piece of the given type, or <br>
+     * -1 if the material has fewer pieces of that type. */
+    private int slot(int type, int n) {
+        for (int i= 0; i < types.length; i++) {
+            if (types[i] == type && n-- == 0)
+                return i;
+        }
+        return -1;
+    }
+
+    /** Writes the position of the given index into codes, the piece code of <br>
+     * each square as in Board or -1 if it is empty, and counts, the number of <br>
+     * pieces of each type in hand indexed by [side][type], and returns 1 if <br>
+     * lower is to move and 0 if UPPER is. Returns -1 if no position has this <br>
+     * index: two pieces share a square or an unpromoted preview is on its last row. */
+    private int decode(long index, int[] codes, int[][] counts) {
+        Arrays.fill(codes, -1);
+        Arrays.fill(counts[Board.LOWER], 0);
+        Arrays.fill(counts[Board.UPPER], 0);
+        for (int i= types.length - 1; i >= 0; i--) {
+            int state= (int) (index % states[i]);
+            index/= states[i];
+            int perSide= states[i] / 2;
+            boolean lower= state < perSide;
+            int loc= state % perSide;
+            if (loc == perSide - 1) {
+                counts[Board.side(lower)][types[i]]++;
+                continue;
+            }
+            boolean pro= canPromote(types[i]) && loc % 2 == 1;
+            int sq= canPromote(types[i]) ? loc / 2 : loc;
+            if (codes[sq] >= 0 || types[i] == Board.PREVIEW && !pro
+                    && sq % Board.BOARD_SIZE == (lower ? 4 : 0))
+                return -1;
+            codes[sq]= Board.code(types[i], lower, pro);
+        }
+        int upperDrive= (int) (index % Board.NUM_SQUARES);
+        int lowerDrive= (int) (index / Board.NUM_SQUARES % Board.NUM_SQUARES);
+        if (codes[upperDrive] >= 0 || codes[lowerDrive] >= 0 || upperDrive == lowerDrive)
+            return -1;
+        codes[upperDrive]= Board.code(Board.DRIVE, false, false);
+        codes[lowerDrive]= Board.code(Board.DRIVE, true, false);
+        return index < Board.NUM_SQUARES * Board.NUM_SQUARES ? 1 : 0;
+    }
+
+    /** Returns the number of plies to mate from the position of Game g with <br>
+     * best play, odd if the player to move wins and even if it loses, DRAW if <br>
+     * the position is drawn and UNKNOWN if it is not in the table. */
+    public int probe(Game g) {
+        long index= index(g, g.isLowerTurn());
+        if (index < 0)
+            return UNKNOWN;
+        int entry= entries.get(HEADER + (int) index) & 0xff;
+        if (entry == INVALID)
+            return UNKNOWN;
+        return entry == DRAWN ? DRAW : entry - 1;
+    }
+
+    /** Returns a move of the player to move in the position of Game g that <br>
+     * keeps its best result: the fastest win, the slowest loss or a draw. <br>
+     * Returns Move.NONE if the position is not in the table or has no moves. */
+    public int bestMove(Game g) {
+        int result= probe(g);
+        if (result == UNKNOWN)
+            return Move.NONE;
+        boolean turn= g.isLowerTurn();
+        int[] moves= new int[MAX_MOVES];
+        int n= g.legalMoves(turn, moves, 0, false);
+        int best= Move.NONE;
+        int bestScore= Integer.MIN_VALUE;
+        for (int i= 0; i < n; i++) {
+            g.makeMove(moves[i], turn);
+            int entry= entries.get(HEADER + (int) index(g, !turn)) & 0xff;
+            g.unmakeMove();
+            // a lost child is a win for the mover: faster wins and slower losses score higher
+            int score= entry == DRAWN ? 0 : entry % 2 == 1 ? 1000 - entry : entry - 1000;
+            if (score > bestScore) {
+                best= moves[i];
+                bestScore= score;
+            }
+        }
+        return best;
+    }
+
+    /** An instance solves a share of the positions of a tablebase being built, <br>
+     * with games of its own to set positions up in. */
+    private static class Solver {
+        /** The table being built. */
+        private Tablebase          table;
+
+        /** The mapped file the table is written to. */
+        private MappedByteBuffer   out;
+
+        /** For each position of the table not solved yet, the number of its <br>
+         * distinct children not yet known to be won by the player to move there; <br>
+         * negative once it is solved and for the indices that are not positions <br>
+         * of the table. Shared by all solvers. */
+        private AtomicIntegerArray remaining;
+
+        /** The game positions are set up in, the game their parents are set up <br>
+         * in, and the legal moves of a position or the indices of its children. */
+        private Game               game=
+                new Game(new Board(true), new int[0], new int[0], true, 0);
+
+        private Game               parent= new Game(new Board(true), new int[0], new int[0], true,
+                0);
+
+        private int[]              moves= new int[MAX_MOVES];
+
+        /** The position decoded: its piece codes and pieces in hand, and the <br>
+         * same for a parent of it being tried. */
+        private int[]              codes= new int[Board.NUM_SQUARES];
+
+        private int[][]            counts= new int[2][Board.NUM_TYPES];
+
+        private int[]              parentCodes= new int[Board.NUM_SQUARES];
+
+        private int[][]            parentCounts= new int[2][Board.NUM_TYPES];
+
+        /** The parents found for the position decoded, without repeats. */
+        private int[]              parents= new int[MAX_MOVES];
+
+        private int                numParents;
+
+        /** The positions this solver solved in the current pass. */
+        private int[]              solved= new int[CHUNK];
+
+        private int                numSolved;
+
+        /** Constructor: a solver of table, written to out. */
+        Solver(Tablebase table, MappedByteBuffer out, AtomicIntegerArray remaining) {
+            this.table= table;
+            this.out= out;
+            this.remaining= remaining;
+        }
+
+        /** Sets up the indices claimed in chunks from next: an index that is not <br>
+         * a position or not the one index gives it is marked INVALID, a position <br>
+         * without legal moves lost in 0 plies, and any other position gets its <br>
+         * number of distinct children. Returns the number of positions lost. */
+        long setUp(AtomicLong next) {
+            numSolved= 0;
+            for (long start= next.getAndAdd(CHUNK); start < table.size;
+                    start= next.getAndAdd(CHUNK)) {
+                long end= Math.min(table.size, start + CHUNK);
+                for (long index= start; index < end; index++) {
+                    int lower= table.decode(index, codes, counts);
+                    boolean turn= lower == 1;
+                    int children= -1;
+                    if (lower >= 0) {
+                        game.setPosition(codes, counts, turn);
+                        if (!game.inCheck(!turn) && table.index(game, turn) == index)
+                            children= children(turn);
+                    }
+                    remaining.set((int) index, children > 0 ? children : -1);
+                    if (children < 0)
+                        out.put(HEADER + (int) index, (byte) INVALID);
+                    if (children == 0)
+                        solve((int) index, 1);
+                }
+            }
+            return numSolved;
+        }
+
+        /** Returns the number of distinct positions the legal moves of the <br>
+         * player given by turn lead to from the position set up. */
+        private int children(boolean turn) {
+            int n= game.legalMoves(turn, moves, 0, false);
+            for (int i= 0; i < n; i++) {
+                game.makeMove(moves[i], turn);
+                moves[i]= (int) table.index(game, !turn);
+                game.unmakeMove();
+            }
+            Arrays.sort(moves, 0, n);
+            int ret= 0;
+            for (int i= 0; i < n; i++) {
+                if (i == 0 || moves[i] != moves[i - 1])
+                    ret++;
+            }
+            return ret;
+        }
+
+        /** Solves the parents of the positions of frontier claimed in chunks <br>
+         * from next, those positions having been solved in pass - 1 plies: a <br>
+         * parent of a lost position is won in pass plies, and a parent whose <br>
+         * children are then all won is lost in pass plies. Returns the number <br>
+         * of positions solved. */
+        long solve(int pass, int[] frontier, AtomicLong next) {
+            numSolved= 0;
+            boolean won= pass % 2 == 1;
+            for (long start= next.getAndAdd(CHUNK); start < frontier.length;
+                    start= next.getAndAdd(CHUNK)) {
+                long end= Math.min(frontier.length, start + CHUNK);
+                for (int i= (int) start; i < end; i++) {
+                    boolean turn= table.decode(frontier[i], codes, counts) == 1;
+                    findParents(frontier[i], turn);
+                    for (int k= 0; k < numParents; k++) {
+                        int p= parents[k];
+                        if (won ? claim(p) : remaining.decrementAndGet(p) == 0)
+                            solve(p, pass + 1);
+                    }
+                }
+            }
+            return numSolved;
+        }
+
+        /** Returns true if position p was not solved and this solver is the one <br>
+         * marking it solved. */
+        private boolean claim(int p) {
+            for (int left= remaining.get(p); left >= 0; left= remaining.get(p)) {
+                if (remaining.compareAndSet(p, left, -1))
+                    return true;
+            }
+            return false;
+        }
+
+        /** Writes entry for position p, marks it solved and adds it to the <br>
+         * positions solved in this pass. */
+        private void solve(int p, int entry) {
+            remaining.set(p, -1);
+            out.put(HEADER + p, (byte) entry);
+            if (numSolved == solved.length)
+                solved= Arrays.copyOf(solved, solved.length * 2);
+            solved[numSolved++]= p;
+        }
+
+        /** Finds the positions not solved yet with a legal move to the position <br>
+         * decoded, whose index is child and where the player given by turn is to <br>
+         * move. The other player moved last: either it dropped one of its <br>
+         * unpromoted pieces, or it moved one of its pieces from an empty square, <br>
+         * perhaps promoting it, and perhaps capturing a piece whose type it holds <br>
+         * in hand. Each such parent whose piece can reach the square is set up <br>
+         * and kept if the move is legal there and leads to the child. */
+        private void findParents(int child, boolean turn) {
+            numParents= 0;
+            boolean mover= !turn;
+            int side= Board.side(mover);
+            for (int to= 0; to < Board.NUM_SQUARES; to++) {
+                int code= codes[to];
+                if (code < 0 || (code >>> 3 & 1) != side)
+                    continue;
+                int type= code & 7;
+                boolean pro= (code & 16) != 0;
+                System.arraycopy(codes, 0, parentCodes, 0, Board.NUM_SQUARES);
+                for (int s= Board.LOWER; s <= Board.UPPER; s++)
+                    System.arraycopy(counts[s], 0, parentCounts[s], 0, Board.NUM_TYPES);
+                if (type != Board.DRIVE && !pro) {
+                    parentCodes[to]= -1;
+                    parentCounts[side][type]++;
+                    tryParent(Move.drop(type, to), child, mover);
+                    parentCounts[side][type]--;
+                }
+                for (int from= 0; from < Board.NUM_SQUARES; from++) {
+                    if (codes[from] >= 0)
+                        continue;
+                    for (int was= pro ? 1 : 0; was >= 0; was--) {
+                        if (was == 0 && pro && !canPromote(type))
+                            break;
+                        parentCodes[from]= Board.code(type, mover, was == 1);
+                        parentCodes[to]= -1;
+                        tryMove(from, to, pro && was == 0, child, mover);
+                        for (int taken= 1; taken < Board.NUM_TYPES; taken++) {
+                            if (counts[side][taken] == 0)
+                                continue;
+                            parentCounts[side][taken]--;
+                            for (int tp= 0; tp < (canPromote(taken) ? 2 : 1); tp++) {
+                                parentCodes[to]= Board.code(taken, turn, tp == 1);
+                                tryMove(from, to, pro && was == 0, child, mover);
+                            }
+                            parentCounts[side][taken]++;
+                        }
+                    }
+                    parentCodes[from]= -1;
+                }
+            }
+        }
+
+        /** Tries the parent set up in parentCodes and parentCounts with the move <br>
+         * of the player given by mover from from to to, promoting if promote is <br>
+         * true, if the piece on from can reach to. A preview promoted by moving <br>
+         * may also have been promoted by reaching the last row. */
+        private void tryMove(int from, int to, boolean promote, int child, boolean mover) {
+            if ( (Board.attacks(parentCodes, from) & 1 << to) == 0)
+                return;
+            tryParent(Move.move(from, to, promote), child, mover);
+            if (promote && (parentCodes[from] & 7) == Board.PREVIEW)
+                tryParent(Move.move(from, to, false), child, mover);
+        }
+
+        /** Adds the position set up in parentCodes and parentCounts, with the <br>
+         * player given by mover to move, to the parents of child if it is a <br>
+         * position of the table not solved yet, not found before, where move m <br>
+         * is legal and leads to child. */
+        private void tryParent(int m, int child, boolean mover) {
+            parent.setPosition(parentCodes, parentCounts, mover);
+            long index= table.index(parent, mover);
+            if (index < 0 || remaining.get((int) index) < 0)
+                return;
+            for (int k= 0; k < numParents; k++) {
+                if (parents[k] == index)
+                    return;
+            }
+            if (!parent.isLegal(m, mover))
+                return;
+            parent.makeMove(m, mover);
+            boolean reaches= table.index(parent, !mover) == child;
+            parent.unmakeMove();
+            if (reaches)
+                parents[numParents++]= (int) index;
+        }
+    }
+
+    /** Builds the tablebase of the given material with the given number of <br>
+     * threads and writes it to the file at path, printing the positions solved <br>
+     * by each pass. It is built by retrograde analysis: pass 0 finds the <br>
+     * positions lost without a legal move and counts the distinct children of <br>
+     * the others, and pass n goes back from the positions solved by pass n - 1 <br>
+     * to their parents, which are won (n odd) or lost (n even) in exactly n <br>
+     * plies, until a pass solves none; the positions left are draws. Each <br>
+     * position is thus expanded forward once, to count its children, and back <br>
+     * once, when it is solved. The counts take four bytes per position on the <br>
+     * heap while building. Returns the built table. Throws an <br>
+     * IllegalArgumentException if the material is not one, or if its mates are <br>
+     * too long for an entry to hold. */
+    static Tablebase build(String material, String path, int threads) throws Exception {
+        final Tablebase table= new Tablebase();
+        table.setMaterial(material);
+        MappedByteBuffer out;
+        try (FileChannel channel= FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            out= channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + table.size);
+        }
+        out.putLong(0, MAGIC);
+        byte[] name= new byte[MAX_PIECES];
+        Arrays.fill(name, (byte) ' ');
+        byte[] letters= table.material().getBytes();
+        System.arraycopy(letters, 0, name, 0, letters.length);
+        out.put(8, name);
+        AtomicIntegerArray remaining= new AtomicIntegerArray((int) table.size);
+        final List<Solver> solvers= new ArrayList<>();
+        for (int i= 0; i < Math.max(1, threads); i++)
+            solvers.add(new Solver(table, out, remaining));
+        ExecutorService pool= Executors.newFixedThreadPool(solvers.size());
+        int[] frontier= null;
+        for (int pass= 0; frontier == null || frontier.length > 0; pass++) {
+            // pass n writes entries n + 1, which must not wrap around to INVALID or DRAWN
+            if (pass + 1 > MAX_ENTRY) {
+                pool.shutdown();
+                throw new IllegalArgumentException("Material too deep: " + material);
+            }
+            final int p= pass;
+            final int[] last= frontier;
+            final AtomicLong next= new AtomicLong();
+            List<Future<Long>> counts= new ArrayList<>();
+            for (Solver s : solvers)
+                counts.add(pool.submit(() -> p == 0 ? s.setUp(next) : s.solve(p, last, next)));
+            int solved= 0;
+            for (Future<Long> f : counts)
+                solved+= f.get();
+            frontier= new int[solved];
+            solved= 0;
+            for (Solver s : solvers) {
+                System.arraycopy(s.solved, 0, frontier, solved, s.numSolved);
+                solved+= s.numSolved;
+            }
+            if (solved > 0)
+                System.out.println("Pass " + pass + ": " + solved + " positions");
+        }
+        pool.shutdown();
+        out.force();
+        table.entries= out;
+        return table;
+    }
+
+    /** Runs tablebase mode given args of the form <br>
+     * -e material tableFile [-t threads] or -e tableFile -f fileName. <br>
+     * The first builds the tablebase of the material with one thread per <br>
+     * available processor by default, writes it to tableFile and prints the <br>
+     * number of wins, losses and draws. The second plays the moves of the file <br>
+     * as in file mode and prints the result of the position reached as given <br>
+     * by the tablebase in tableFile, and the best move. Missing arguments, a <br>
+     * count of threads that is not a number or any other argument get the <br>
+     * usage line. */
+    static void run(String[] args) throws Exception {
+        if (args.length == 4 && args[2].equals("-f")) {
+            Tablebase table= new Tablebase(args[1]);
+            Game g= new Game(Utils.readTestCase(args[3]));
+            g.replayMoves();
+            if (g.isGameOver()) {
+                System.out.println("The game is over.");
+                return;
+            }
+            int result= table.probe(g);
+            String player= g.isLowerTurn() ? "lower" : "UPPER";
+            if (result == UNKNOWN)
+                System.out.println("Result: not in the tablebase");
+            else if (result == DRAW)
+                System.out.println("Result: draw");
+            else
+                System.out.println("Result: " + player + (result % 2 == 1 ? " wins" : " loses")
+                        + " in " + result + " plies");
+            int best= table.bestMove(g);
+            System.out.println("Best move: " + (best == Move.NONE ? "none" : Move.toString(best)));
+            return;
+        }
+        int threads= Runtime.getRuntime().availableProcessors();
+        boolean usage= args.length < 3 || args[1].startsWith("-") || args[2].startsWith("-");
+        for (int i= 3; i < args.length && !usage; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,9}"))
+                threads= Integer.parseInt(args[++i]);
+            else
+                usage= true;
+        }
+        if (usage) {
+            System.out.println("Usage: -e material tableFile [-t threads] "
+                    + "| -e tableFile -f fileName");
+            return;
+        }
+        long start= System.nanoTime();
+        Tablebase table= build(args[1], args[2], threads);
+        long[] results= new long[3];
+        for (long index= 0; index < table.size; index++) {
+            int entry= table.entries.get(HEADER + (int) index) & 0xff;
+            if (entry != INVALID)
+                results[entry == DRAWN ? 2 : entry % 2 == 0 ? 0 : 1]++;
+        }
+        System.out.println("");
+        System.out.println("Material: " + table.material());
+        System.out.println("Positions: " + (results[0] + results[1] + results[2]));
+        System.out.println("Wins: " + results[0]);
+        System.out.println("Losses: " + results[1]);
+        System.out.println("Draws: " + results[2]);
+        System.out.println("Time: " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** An instance plays one game of a tournament between two move-selection <br>
+ * policies, each given as "random" (a uniformly random legal move) or <br>
+ * "search:depth" (the engine searching depth plies deep). Games are played <br>
+ * through Game.move, so every rule applies, the 400-turn tie rule included, <br>
+ * and a player with no legal move resigns. */
+public class Tournament {
+    /** The policy used when none is given, and the depth of "search". */
+    private final static String DEFAULT_POLICY= "search:2";
+
+    private final static int    DEFAULT_DEPTH= 2;
+
+    /** The longest a searching policy thinks per move, in milliseconds. */
+    private final static long   SEARCH_MILLIS= 1000;
+
+    /** The transposition table size of a searching policy. */
+    private final static int    TABLE_SIZE= 1 << 12;
+
+    /** The room for the legal moves of one position. */
+    private final static int    MAX_MOVES= 2048;
+
+    /** Results of a game for the policy that played lower. */
+    final static int            LOWER_WINS= 0, UPPER_WINS= 1, DRAW= 2;
+
+    /** The game played. */
+    private Game     game;
+
+    /** The search depth of the lower and UPPER policy, or 0 for random moves. */
+    private int[]    depths;
+
+    /** The engine of each side, or null for a random policy. */
+    private Engine[] engines;
+
+    /** Chooses the moves of random policies. */
+    private Random   random;
+
+    /** The legal moves of the position. */
+    private int[]    moves;
+
+    /** Constructor: creates a game from Game g, lower playing policy lower <br>
+     * and UPPER playing policy upper, with random choices drawn from seed. */
+    public Tournament(Game g, String lower, String upper, long seed) {
+        game= g;
+        depths= new int[] {depth(lower), depth(upper)};
+        engines= new Engine[2];
+        for (int side= Board.LOWER; side <= Board.UPPER; side++) {
+            if (depths[side] > 0)
+                engines[side]= new Engine(g, TABLE_SIZE);
+        }
+        random= new Random(seed);
+        moves= new int[MAX_MOVES];
+    }
+
+    /** Returns the search depth of policy, or 0 if policy plays random moves. <br>
+     * Throws an IllegalArgumentException if policy is not a known policy. */
+    static int depth(String policy) {
+        if (policy.equals("random"))
+            return 0;
+        if (policy.equals("search"))
+            return DEFAULT_DEPTH;
+        String count= policy.substring(Math.min(policy.length(), "search:".length()));
+        if (policy.startsWith("search:") && count.matches("\\d{1,9}")) {
+            int depth= Integer.parseInt(count);
+            if (depth > 0)
+                return depth;
+        }
+        throw new IllegalArgumentException("Unknown policy: " + policy);
+    }
+
+    /** Plays the game until it is over and returns its result, LOWER_WINS, <br>
+     * UPPER_WINS or DRAW. */
+    public int play() {
+        String statement= "";
+        while (!game.isGameOver()) {
+            statement= game.playMove(choose());
+        }
+        if (statement.startsWith("lower"))
+            return LOWER_WINS;
+        return statement.startsWith("UPPER") ? UPPER_WINS : DRAW;
+    }
+
+    /** Returns the move of the policy of the player to move, or Move.NONE <br>
+     * if that player has no legal move. */
+    private int choose() {
+        boolean turn= game.isLowerTurn();
+        int side= Board.side(turn);
+        if (engines[side] != null)
+            return engines[side].search(SEARCH_MILLIS, depths[side]);
+        int n= game.legalMoves(turn, moves, 0, false);
+        return n == 0 ? Move.NONE : moves[random.nextInt(n)];
+    }
+
+    /** Runs tournament mode given args of the form <br>
+     * -m games [policyA] [policyB] [-t threads] [-o openingsFile] [-seed n] <br>
+     * Plays the given number of games between policyA and policyB (by default <br>
+     * search:2 against random), which take turns playing lower. Each game starts <br>
+     * from the standard start position, or from the positions of the openings <br>
+     * file in turn, one position in the notation of Position per line. Games are <br>
+     * played in parallel on one thread per available processor by default, and <br>
+     * the wins of each policy, draws, average game length and games per second <br>
+     * are printed when all are over. No count of games, a count that is not a <br>
+     * number, an unknown policy or any other argument gets the usage line. */
+    static void run(String[] args) throws Exception {
+        int threads= Runtime.getRuntime().availableProcessors();
+        long seed= 0;
+        String openingsPath= null;
+        List<String> policies= new ArrayList<>();
+        boolean usage= args.length < 2 || !args[1].matches("\\d{1,9}");
+        for (int i= 2; i < args.length && !usage; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length
+                    && args[i + 1].matches("\\d{1,9}")) {
+                threads= Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-seed") && i + 1 < args.length
+                    && args[i + 1].matches("-?\\d{1,18}")) {
+                seed= Long.parseLong(args[++i]);
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                openingsPath= args[++i];
+            } else if (!args[i].startsWith("-") && policies.size() < 2) {
+                policies.add(args[i]);
+            } else {
+                usage= true;
+            }
+        }
+        while (policies.size() < 2)
+            policies.add(policies.isEmpty() ? DEFAULT_POLICY : "random");
+        final String a= policies.get(0);
+        final String b= policies.get(1);
+        try {
+            depth(a);
+            depth(b);
+        } catch (IllegalArgumentException e) {
+            usage= true;
+        }
+        if (usage) {
+            System.out.println("Usage: -m games [policyA] [policyB] [-t threads] "
+                    + "[-o openingsFile] [-seed n]");
+            return;
+        }
+        final int games= Integer.parseInt(args[1]);
+        final List<String> openings= new ArrayList<>();
+        if (openingsPath != null) {
+            BufferedReader br= new BufferedReader(new FileReader(openingsPath));
+            for (String line= br.readLine(); line != null; line= br.readLine()) {
+                if (!line.trim().isEmpty())
+                    openings.add(line.trim());
+            }
+            br.close();
+        }
+        for (String pos : openings)
+            Position.parse(pos);
+        long start= System.nanoTime();
+        ExecutorService pool= Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<int[]>> results= new ArrayList<>();
+        for (int i= 0; i < games; i++) {
+            final int index= i;
+            final long gameSeed= seed + i;
+            results.add(pool.submit(() -> {
+                Game g= openings.isEmpty() ? new Game()
+                        : Position.parse(openings.get(index % openings.size()));
+                int turns= g.getNumTurns();
+                boolean aLower= index % 2 == 0;
+                int result= new Tournament(g, aLower ? a : b, aLower ? b : a, gameSeed).play();
+                return new int[] {result, g.getNumTurns() - turns, aLower ? 1 : 0};
+            }));
+        }
+        // wins of a and b, draws, then the same for the games a played lower
+        int[] counts= new int[6];
+        long turns= 0;
+        for (Future<int[]> f : results) {
+            int[] r= f.get();
+            int aLower= r[2];
+            int winner= r[0] == DRAW ? 2 : (r[0] == LOWER_WINS) == (aLower == 1) ? 0 : 1;
+            counts[winner]++;
+            if (aLower == 1)
+                counts[3 + winner]++;
+            turns+= r[1];
+        }
+        pool.shutdown();
+        long nanos= Math.max(1, System.nanoTime() - start);
+        int aLowerGames= (games + 1) / 2;
+        System.out.println("Games: " + games + " (" + a + " vs " + b + ")");
+        System.out.println("A (" + a + ") wins: " + counts[0] + " (" + percent(counts[0], games)
+                + "), as lower " + counts[3] + "/" + aLowerGames);
+        System.out.println("B (" + b + ") wins: " + counts[1] + " (" + percent(counts[1], games)
+                + "), as lower " + (counts[1] - counts[4]) + "/" + (games - aLowerGames));
+        System.out.println("Draws: " + counts[2] + " (" + percent(counts[2], games) + ")");
+        System.out.println("Average length: "
+                + String.format("%.1f", games == 0 ? 0.0 : (double) turns / games) + " turns");
+        System.out.println("Time: " + nanos / 1000000 + " ms");
+        System.out.println("Games/sec: " + String.format("%.1f", games * 1e9 / nanos));
+    }
+
+    /** Returns n out of total as a percentage with one decimal. */
+    private static String percent(int n, int total) {
+        return String.format("%.1f%%", total == 0 ? 0.0 : 100.0 * n / total);
+    }
+}
@@ -1,7 +1,11 @@
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 /** An instance represents a utility class for parsing file inputs in file mode
@@ -49,9 +53,12 @@ public class Utils {
         /** The pieces captured by the lower player. */
         List<String>          lowerCaptures;
 
-        /** The moves given to be made. */
+        /** The moves given to be made, or null if they are read by reader. */
         List<String>          moves;
 
+        /** The reader of the moves still in the file, or null if they are in moves. */
+        MoveReader            reader;
+
         /**A static instance represents a test case that contains the file information <br>
          * regarding initial positions, upper captures, lower captures, and moves to <br>
          * be made. */
@@ -63,6 +70,16 @@ public class Utils {
             moves= m;
         }
 
+        /** Constructor: creates a test case like the one above, except that the <br>
+         * moves to be made are read one at a time by MoveReader r. */
+        public TestCase(List<InitialPosition> ip, List<String> uc, List<String> lc,
+                MoveReader r) {
+            initialPieces= ip;
+            upperCaptures= uc;
+            lowerCaptures= lc;
+            reader= r;
+        }
+
         /** Returns the list of initial pieces. */
         public List<InitialPosition> getInitPieces() {
             return initialPieces;
@@ -78,11 +95,17 @@ public class Utils {
             return lowerCaptures;
         }
 
-        /** Returns the list of moves to be made. */
+        /** Returns the list of moves to be made, or null if they are read <br>
+         * from the file one at a time. */
         public List<String> getMoves() {
             return moves;
         }
 
+        /** Returns a MoveReader yielding the moves to be made. */
+        public MoveReader getMoveReader() {
+            return reader != null ? reader : new MoveReader(moves);
+        }
+
         /** Returns the String representation of the test case file. */
         @Override public String toString() {
             String str= "";
@@ -102,18 +125,86 @@ public class Utils {
             }
             str+= "]\n";
             str+= "moves: [\n";
-            for (String move : moves) {
-                str+= move + "\n";
+            if (moves != null) {
+                for (String move : moves) {
+                    str+= move + "\n";
+                }
             }
             str+= "]";
             return str;
         }
     }
 
-    /** Parses a file test case and returns a test case object containing the <br>
-     * information of the initial pieces, upper and lower captures, and moves <br>
-     * to be made. */
-    public static TestCase parseTestCase(String path) throws Exception { //input file
+    /** A static instance yields the moves of a test case one at a time, <br>
+     * either from a list or read lazily from the rest of a test case file, <br>
+     * so that scripts of any length are replayed in constant memory. */
+    static class MoveReader implements Iterator<String>, Closeable {
+        /** The moves, or null if they are read from br. */
+        private List<String>   moves;
+
+        /** The index in moves of the next move. */
+        private int            index;
+
+        /** The reader of the rest of the file, or null if it is closed. */
+        private BufferedReader br;
+
+        /** The next move read from br, or null if there are no more moves. */
+        private String         next;
+
+        /** Constructor: creates a MoveReader yielding the moves of list m. */
+        public MoveReader(List<String> m) {
+            moves= m;
+        }
+
+        /** Constructor: creates a MoveReader yielding the lines read from <br>
+         * BufferedReader r, trimmed, and closing r after the last one. */
+        public MoveReader(BufferedReader r) throws IOException {
+            br= r;
+            next= readLine();
+        }
+
+        /** Returns true if there is another move to be made. */
+        @Override public boolean hasNext() {
+            return moves != null ? index < moves.size() : next != null;
+        }
+
+        /** Returns the next move to be made. */
+        @Override public String next() {
+            if (moves != null)
+                return moves.get(index++);
+            String ret= next;
+            try {
+                next= readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return ret;
+        }
+
+        /** Returns the next line of br trimmed, or null at the end of the <br>
+         * file, closing br. */
+        private String readLine() throws IOException {
+            if (br == null)
+                return null;
+            String line= br.readLine();
+            if (line == null)
+                close();
+            return line == null ? null : line.trim();
+        }
+
+        /** Closes the file the moves are read from, if any. */
+        @Override public void close() throws IOException {
+            if (br != null)
+                br.close();
+            br= null;
+            next= null;
+        }
+    }
+
+    /** Reads the initial pieces and captures of a file test case and returns <br>
+     * a test case object whose moves are read from the file one at a time by <br>
+     * its MoveReader, which closes the file after the last move. */
+    public static TestCase readTestCase(String path) throws Exception { //input file
         BufferedReader br= new BufferedReader(new FileReader(path));
         String line= br.readLine().trim();
         List<InitialPosition> initialPieces= new ArrayList<>();
@@ -127,14 +218,20 @@ public class Utils {
         line= br.readLine().trim();
         List<String> lowerCaptures= Arrays.asList(line.substring(1, line.length() - 1).split(" "));
         line= br.readLine().trim();
-        line= br.readLine().trim();
+        return new TestCase(initialPieces, upperCaptures, lowerCaptures, new MoveReader(br));
+    }
+
+    /** Parses a file test case and returns a test case object containing the <br>
+     * information of the initial pieces, upper and lower captures, and moves <br>
+     * to be made. */
+    public static TestCase parseTestCase(String path) throws Exception { //input file
+        TestCase tc= readTestCase(path);
         List<String> moves= new ArrayList<>();
-        while (line != null) {
-            line= line.trim();
-            moves.add(line);
-            line= br.readLine();
+        MoveReader reader= tc.getMoveReader();
+        while (reader.hasNext()) {
+            moves.add(reader.next());
         }
-        br.close();
-        return new TestCase(initialPieces, upperCaptures, lowerCaptures, moves);
+        return new TestCase(tc.getInitPieces(), tc.getUpperCaptures(), tc.getLowerCaptures(),
+                moves);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+/** A utility class holding the random keys used to hash BoxShogi positions <br>
+ * (Zobrist hashing). A position's key is the xor of the keys of the pieces on <br>
+ * its squares and of the side to move, plus the sum of the keys of the pieces <br>
+ * in hand, so that it can be updated incrementally as moves are made. The keys <br>
+ * come from a fixed seed, so a position has the same key in every process. */
+public class Zobrist {
+    /** Keys of the pieces on the board indexed by [piece code][square]. */
+    final static long[][] PIECES;
+
+    /** Keys of one piece in hand indexed by [side][type]. */
+    final static long[][] HANDS;
+
+    /** Key of the UPPER player being the side to move. */
+    final static long     UPPER_TO_MOVE;
+
+    static {
+        long[] seed= {0x9E3779B97F4A7C15L};
+        PIECES= new long[32][Board.NUM_SQUARES];
+        for (long[] keys : PIECES) {
+            for (int sq= 0; sq < keys.length; sq++) {
+                keys[sq]= next(seed);
+            }
+        }
+        HANDS= new long[2][Board.NUM_TYPES];
+        for (long[] keys : HANDS) {
+            for (int type= 0; type < keys.length; type++) {
+                keys[type]= next(seed);
+            }
+        }
+        UPPER_TO_MOVE= next(seed);
+    }
+
+    /** Advances the state in seed[0] and returns the next key (SplitMix64). */
+    private static long next(long[] seed) {
+        long z= seed[0]+= 0x9E3779B97F4A7C15L;
+        z= (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z= (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+}